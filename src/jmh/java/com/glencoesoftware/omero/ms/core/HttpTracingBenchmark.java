@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import brave.Span;
+import brave.Tracing;
+import brave.handler.FinishedSpanHandler;
+import brave.handler.MutableSpan;
+import brave.http.HttpServerAdapter;
+import brave.http.HttpServerHandler;
+import brave.http.HttpTracing;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContext.Extractor;
+import brave.sampler.Sampler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.net.SocketAddress;
+import zipkin2.reporter.Reporter;
+
+/**
+ * Per request overhead of tracing a Vert.x HTTP request, from receiving
+ * the request to parsing the response, with the method and route handed
+ * to the response adapter through a thread local, as upstream Brave and
+ * earlier releases did, and through {@link VertxHttpServerAdapter.Response}
+ * as now.  Sampled spans are recorded, as a finished span handler is
+ * registered, but are then dropped rather than reported so that only the
+ * instrumentation itself is measured.  Run with <code>./gradlew jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class HttpTracingBenchmark {
+
+    /** Matched route path */
+    private static final String ROUTE = "/tile/:imageId/:z/:c/:t";
+
+    /**
+     * The response adapter of earlier releases, which reads the method and
+     * route from a thread local set around <code>handleSend</code>.
+     */
+    static final class ThreadLocalAdapter
+            extends HttpServerAdapter<HttpServerRequest, HttpServerResponse> {
+
+        static final ThreadLocal<String[]> METHOD_AND_PATH =
+                new ThreadLocal<String[]>();
+
+        static void setCurrentMethodAndPath(String method, String path) {
+            String[] methodAndPath = METHOD_AND_PATH.get();
+            if (methodAndPath == null) {
+                methodAndPath = new String[2];
+                METHOD_AND_PATH.set(methodAndPath);
+            }
+            methodAndPath[0] = method;
+            methodAndPath[1] = path;
+        }
+
+        private final VertxHttpServerAdapter delegate =
+                new VertxHttpServerAdapter();
+
+        @Override
+        public String method(HttpServerRequest request) {
+            return delegate.method(request);
+        }
+
+        @Override
+        public String path(HttpServerRequest request) {
+            return delegate.path(request);
+        }
+
+        @Override
+        public String url(HttpServerRequest request) {
+            return delegate.url(request);
+        }
+
+        @Override
+        public String requestHeader(HttpServerRequest request, String name) {
+            return delegate.requestHeader(request, name);
+        }
+
+        @Override
+        public String methodFromResponse(HttpServerResponse ignored) {
+            String[] methodAndPath = METHOD_AND_PATH.get();
+            return methodAndPath != null ? methodAndPath[0] : null;
+        }
+
+        @Override
+        public String route(HttpServerResponse ignored) {
+            String[] methodAndPath = METHOD_AND_PATH.get();
+            String result = methodAndPath != null ? methodAndPath[1] : null;
+            return result != null ? result : "";
+        }
+
+        @Override
+        public Integer statusCode(HttpServerResponse response) {
+            int result = statusCodeAsInt(response);
+            return result != 0 ? result : null;
+        }
+
+        @Override
+        public int statusCodeAsInt(HttpServerResponse response) {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public boolean parseClientIpAndPort(
+                HttpServerRequest request, Span span) {
+            return delegate.parseClientIpAndPort(request, span);
+        }
+    }
+
+    /** Whether or not requests are sampled */
+    @Param({"true", "false"})
+    public boolean sampled;
+
+    private Tracing tracing;
+
+    private Extractor<HttpServerRequest> extractor;
+
+    private HttpServerHandler<HttpServerRequest, HttpServerResponse>
+            threadLocalHandler;
+
+    private HttpServerHandler<
+            HttpServerRequest, VertxHttpServerAdapter.Response>
+                perRequestHandler;
+
+    private HttpServerRequest request;
+
+    private HttpServerResponse response;
+
+    @Setup
+    public void setUp() {
+        tracing = Tracing.newBuilder()
+                .sampler(sampled
+                        ? Sampler.ALWAYS_SAMPLE : Sampler.NEVER_SAMPLE)
+                .spanReporter(Reporter.NOOP)
+                .addFinishedSpanHandler(new FinishedSpanHandler() {
+                    @Override
+                    public boolean handle(
+                            TraceContext context, MutableSpan span) {
+                        return false;
+                    }
+                })
+                .build();
+        HttpTracing httpTracing = HttpTracing.create(tracing);
+        extractor = tracing.propagation().extractor(
+                (carrier, key) -> carrier.getHeader(key));
+        threadLocalHandler = HttpServerHandler.create(
+                httpTracing, new ThreadLocalAdapter());
+        perRequestHandler = HttpServerHandler.create(
+                httpTracing, new VertxHttpServerAdapter());
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        SocketAddress remoteAddress =
+                SocketAddress.inetSocketAddress(54321, "127.0.0.1");
+        request = (HttpServerRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { HttpServerRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "method":
+                            return HttpMethod.GET;
+                        case "path":
+                            return "/tile/1/0/0/0";
+                        case "absoluteURI":
+                            return "http://localhost/tile/1/0/0/0";
+                        case "headers":
+                            return headers;
+                        case "getHeader":
+                            return headers.get((String) args[0]);
+                        case "remoteAddress":
+                            return remoteAddress;
+                        default:
+                            return null;
+                    }
+                });
+        response = (HttpServerResponse) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { HttpServerResponse.class },
+                (proxy, method, args) ->
+                    "getStatusCode".equals(method.getName()) ? 200 : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tracing.close();
+    }
+
+    @Benchmark
+    public Span threadLocal() {
+        Span span = threadLocalHandler.handleReceive(extractor, request);
+        ThreadLocalAdapter.setCurrentMethodAndPath(
+                request.method().name(), ROUTE);
+        try {
+            threadLocalHandler.handleSend(response, null, span);
+        } finally {
+            ThreadLocalAdapter.setCurrentMethodAndPath(null, null);
+        }
+        return span;
+    }
+
+    @Benchmark
+    public Span perRequest() {
+        Span span = perRequestHandler.handleReceive(extractor, request);
+        perRequestHandler.handleSend(
+                new VertxHttpServerAdapter.Response(
+                        response, request.method().name(), ROUTE),
+                null, span);
+        return span;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.LoggerFactory;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Minimal circuit breaker used to guard calls to backends (Redis,
+ * PostgreSQL, the OMERO server) which may become unavailable.  After
+ * <code>failure_threshold</code> consecutive failures the circuit opens and
+ * calls are rejected immediately.  Once <code>reset_timeout</code>
+ * milliseconds have elapsed up to <code>half_open_max_probes</code> calls
+ * are let through; a successful probe closes the circuit and a failed one
+ * opens it again.
+ */
+public class CircuitBreaker {
+
+    private static final org.slf4j.Logger log =
+            LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /** Circuit breaker states, ordinal is exported as the state metric */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Current state of each circuit breaker by name */
+    private static final Gauge STATE = Gauge.build()
+            .name("circuitBreakerState")
+            .labelNames("name")
+            .help("Circuit breaker state (0 closed, 1 open, 2 half open)")
+            .register();
+
+    /** State transitions of each circuit breaker by name and new state */
+    private static final Counter TRANSITIONS = Counter.build()
+            .name("circuitBreakerTransitions")
+            .labelNames("name", "state")
+            .help("Circuit breaker state transitions")
+            .register();
+
+    /** Calls rejected while the circuit was open by name */
+    private static final Counter REJECTED = Counter.build()
+            .name("circuitBreakerRejected")
+            .labelNames("name")
+            .help("Calls rejected by an open circuit breaker")
+            .register();
+
+    /** Name of the circuit breaker, used for logging and metrics */
+    private final String name;
+
+    /** Whether or not the circuit breaker is enabled at all */
+    private final boolean enabled;
+
+    /** Consecutive failures required to open the circuit */
+    private final int failureThreshold;
+
+    /** Milliseconds to wait before allowing probes once open */
+    private final long resetTimeout;
+
+    /** Maximum number of concurrent probes while half open */
+    private final int halfOpenMaxProbes;
+
+    /** Current state */
+    private volatile State state = State.CLOSED;
+
+    /** Consecutive failures while closed */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /** Probes currently in flight while half open */
+    private final AtomicInteger probes = new AtomicInteger();
+
+    /** Time at which the circuit was last opened */
+    private volatile long openedAt;
+
+    /**
+     * Constructor.
+     * @param name Name of the circuit breaker.
+     * @param failureThreshold Consecutive failures required to open the
+     * circuit.
+     * @param resetTimeout Milliseconds to wait before allowing probes once
+     * the circuit is open.
+     * @param halfOpenMaxProbes Maximum number of concurrent probes allowed
+     * while half open.
+     */
+    public CircuitBreaker(
+            String name, int failureThreshold, long resetTimeout,
+            int halfOpenMaxProbes) {
+        this(name, true, failureThreshold, resetTimeout, halfOpenMaxProbes);
+    }
+
+    private CircuitBreaker(
+            String name, boolean enabled, int failureThreshold,
+            long resetTimeout, int halfOpenMaxProbes) {
+        if (failureThreshold < 1 || resetTimeout < 0 || halfOpenMaxProbes < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid circuit breaker configuration for " + name);
+        }
+        this.name = name;
+        this.enabled = enabled;
+        this.failureThreshold = failureThreshold;
+        this.resetTimeout = resetTimeout;
+        this.halfOpenMaxProbes = halfOpenMaxProbes;
+        if (enabled) {
+            STATE.labels(name).set(State.CLOSED.ordinal());
+        }
+    }
+
+    /**
+     * Creates a circuit breaker from configuration of the form:
+     * <pre>
+     * {
+     *     "failure_threshold": 5,
+     *     "reset_timeout": 30000,
+     *     "half_open_max_probes": 1
+     * }
+     * </pre>
+     * @param name Name of the circuit breaker.
+     * @param config Circuit breaker configuration; if <code>null</code> or
+     * <code>enabled</code> is <code>false</code> the returned circuit breaker
+     * allows all calls.
+     * @return See above.
+     */
+    public static CircuitBreaker fromConfig(String name, JsonObject config) {
+        if (config == null) {
+            return new CircuitBreaker(name, false, 1, 0, 1);
+        }
+        return new CircuitBreaker(
+                name,
+                config.getBoolean("enabled", true),
+                config.getInteger("failure_threshold", 5),
+                config.getLong("reset_timeout", 30000L),
+                config.getInteger("half_open_max_probes", 1));
+    }
+
+    /**
+     * @return Name of the circuit breaker.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Current state of the circuit breaker.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Whether or not a call should be attempted.  Every call for which this
+     * returns <code>true</code> must be followed by exactly one of
+     * {@link #onSuccess()} or {@link #onFailure()}.
+     * @return <code>true</code> if the call should be attempted.
+     */
+    public boolean allowRequest() {
+        if (!enabled) {
+            return true;
+        }
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < resetTimeout) {
+                REJECTED.labels(name).inc();
+                return false;
+            }
+            transition(State.OPEN, State.HALF_OPEN);
+        }
+        // Half open, only let a bounded number of probes through
+        while (true) {
+            int inFlight = probes.get();
+            if (state != State.HALF_OPEN) {
+                // Another probe has already resolved the state
+                return allowRequest();
+            }
+            if (inFlight >= halfOpenMaxProbes) {
+                REJECTED.labels(name).inc();
+                return false;
+            }
+            if (probes.compareAndSet(inFlight, inFlight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records a successful call.
+     */
+    public void onSuccess() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.CLOSED) {
+            if (failures.get() != 0) {
+                failures.set(0);
+            }
+            return;
+        }
+        if (transition(State.HALF_OPEN, State.CLOSED)) {
+            failures.set(0);
+            probes.set(0);
+        }
+    }
+
+    /**
+     * Records a failed call.
+     */
+    public void onFailure() {
+        if (!enabled) {
+            return;
+        }
+        State current = state;
+        if (current == State.CLOSED) {
+            if (failures.incrementAndGet() >= failureThreshold) {
+                openedAt = System.currentTimeMillis();
+                transition(State.CLOSED, State.OPEN);
+            }
+            return;
+        }
+        if (current == State.HALF_OPEN) {
+            openedAt = System.currentTimeMillis();
+            if (transition(State.HALF_OPEN, State.OPEN)) {
+                probes.set(0);
+            }
+        }
+    }
+
+    private synchronized boolean transition(State from, State to) {
+        if (state != from) {
+            return false;
+        }
+        state = to;
+        log.info("Circuit breaker '{}' transitioned from {} to {}",
+                name, from, to);
+        STATE.labels(name).set(to.ordinal());
+        TRANSITIONS.labels(name, to.name()).inc();
+        return true;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.Objects;
+
+/**
+ * Compact, immutable {@link IConnector} backed by primitive fields.  Whether
+ * each nullable field is present, and the boolean values themselves, are
+ * encoded in a single flags byte so that no parse state or boxed values are
+ * retained and cached connectors cost tens of bytes plus the session key.
+ * Values are only boxed when requested through the {@link IConnector}
+ * getters.
+ */
+public final class CompactConnector implements IConnector {
+
+    private static final byte HAS_SERVER_ID = 1;
+
+    private static final byte HAS_USER_ID = 1 << 1;
+
+    private static final byte HAS_IS_SECURE = 1 << 2;
+
+    private static final byte IS_SECURE = 1 << 3;
+
+    private static final byte HAS_IS_PUBLIC = 1 << 4;
+
+    private static final byte IS_PUBLIC = 1 << 5;
+
+    private final long serverId;
+
+    private final long userId;
+
+    private final String omeroSessionKey;
+
+    private final byte flags;
+
+    /**
+     * Constructor.
+     * @param serverId OMERO server identifier or <code>null</code>.
+     * @param isSecure Whether or not the connection is secure or
+     * <code>null</code>.
+     * @param isPublic Whether or not the connector belongs to the public user
+     * or <code>null</code>.
+     * @param omeroSessionKey OMERO session key or <code>null</code>.
+     * @param userId OMERO user identifier or <code>null</code>.
+     */
+    public CompactConnector(
+            Long serverId, Boolean isSecure, Boolean isPublic,
+            String omeroSessionKey, Long userId) {
+        int flags = 0;
+        if (serverId != null) {
+            flags |= HAS_SERVER_ID;
+        }
+        if (userId != null) {
+            flags |= HAS_USER_ID;
+        }
+        if (isSecure != null) {
+            flags |= isSecure ? HAS_IS_SECURE | IS_SECURE : HAS_IS_SECURE;
+        }
+        if (isPublic != null) {
+            flags |= isPublic ? HAS_IS_PUBLIC | IS_PUBLIC : HAS_IS_PUBLIC;
+        }
+        this.serverId = serverId == null ? 0L : serverId;
+        this.userId = userId == null ? 0L : userId;
+        this.omeroSessionKey = omeroSessionKey;
+        this.flags = (byte) flags;
+    }
+
+    /**
+     * Copies any connector into its compact representation.
+     * @param connector Connector to copy.
+     * @return <code>connector</code> itself if it is already compact, a
+     * compact copy otherwise.
+     */
+    public static CompactConnector copyOf(IConnector connector) {
+        if (connector instanceof CompactConnector) {
+            return (CompactConnector) connector;
+        }
+        return new CompactConnector(
+                connector.getServerId(), connector.getIsSecure(),
+                connector.getIsPublic(), connector.getOmeroSessionKey(),
+                connector.getUserId());
+    }
+
+    private boolean has(byte flag) {
+        return (flags & flag) != 0;
+    }
+
+    @Override
+    public Long getServerId() {
+        return has(HAS_SERVER_ID) ? Long.valueOf(serverId) : null;
+    }
+
+    @Override
+    public Boolean getIsSecure() {
+        return has(HAS_IS_SECURE) ? Boolean.valueOf(has(IS_SECURE)) : null;
+    }
+
+    @Override
+    public Boolean getIsPublic() {
+        return has(HAS_IS_PUBLIC) ? Boolean.valueOf(has(IS_PUBLIC)) : null;
+    }
+
+    @Override
+    public String getOmeroSessionKey() {
+        return omeroSessionKey;
+    }
+
+    @Override
+    public Long getUserId() {
+        return has(HAS_USER_ID) ? Long.valueOf(userId) : null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompactConnector)) {
+            return false;
+        }
+        CompactConnector other = (CompactConnector) obj;
+        return serverId == other.serverId
+                && userId == other.userId
+                && flags == other.flags
+                && Objects.equals(omeroSessionKey, other.omeroSessionKey);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(serverId);
+        result = 31 * result + Long.hashCode(userId);
+        result = 31 * result + flags;
+        return 31 * result + Objects.hashCode(omeroSessionKey);
+    }
+
+    @Override
+    public String toString() {
+        // Deliberately omits the OMERO session key
+        return "CompactConnector [serverId=" + getServerId()
+                + ", userId=" + getUserId()
+                + ", isSecure=" + getIsSecure()
+                + ", isPublic=" + getIsPublic() + "]";
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import io.prometheus.client.Counter;
+
+/**
+ * Small, bounded, content addressed cache of decoded connectors keyed by
+ * the raw session data they were decoded from.  Many session keys share
+ * byte identical session data and the same data is fetched again on every
+ * session key cache miss, so decoding is skipped whenever the data has been
+ * seen recently.  The cache is direct mapped: each entry lives in the slot
+ * selected by a fast non-cryptographic hash of the data and is only a hit
+ * if the hash, length and bytes all match.  Lookups and updates are lock
+ * free; a colliding entry simply replaces the previous occupant of the slot.
+ */
+public class ConnectorDecodeCache {
+
+    /** Lookups of each cache by name and result */
+    private static final Counter REQUESTS = Counter.build()
+            .name("connectorDecodeCacheRequests")
+            .labelNames("name", "result")
+            .help("Connector decode cache lookups by result")
+            .register();
+
+    /** Cached session data and the connector decoded from it */
+    private static final class Entry {
+
+        private final int hash;
+
+        private final byte[] data;
+
+        private final IConnector connector;
+
+        private Entry(int hash, byte[] data, IConnector connector) {
+            this.hash = hash;
+            this.data = data;
+            this.connector = connector;
+        }
+    }
+
+    /** Name of the cache, used for metrics */
+    private final String name;
+
+    /** Cache slots or <code>null</code> if caching is disabled */
+    private final AtomicReferenceArray<Entry> entries;
+
+    /** Mask used to select a slot, the number of slots is a power of two */
+    private final int mask;
+
+    private final Counter.Child hits;
+
+    private final Counter.Child misses;
+
+    /**
+     * Constructor.
+     * @param name Name of the cache, used for metrics.
+     * @param size Maximum number of cached connectors, rounded up to a power
+     * of two.  Caching is disabled if less than one.
+     */
+    public ConnectorDecodeCache(String name, int size) {
+        this.name = name;
+        if (size < 1) {
+            entries = null;
+            mask = 0;
+        } else {
+            int slots = Integer.highestOneBit(Math.min(size, 1 << 30));
+            if (slots < size) {
+                slots <<= 1;
+            }
+            entries = new AtomicReferenceArray<Entry>(slots);
+            mask = slots - 1;
+        }
+        hits = REQUESTS.labels(name, "hit");
+        misses = REQUESTS.labels(name, "miss");
+    }
+
+    /**
+     * @return Name of the cache.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the connector previously decoded from identical session data,
+     * decoding and caching it otherwise.  The session data must not be
+     * modified after it has been passed to this method.
+     * @param data Raw session data.
+     * @param decoder Decodes a connector from session data.  Exceptions
+     * thrown are propagated and nothing is cached.
+     * @return See above.
+     */
+    public IConnector get(byte[] data, Function<byte[], IConnector> decoder) {
+        if (entries == null) {
+            return decoder.apply(data);
+        }
+        int hash = hash(data);
+        int slot = hash & mask;
+        Entry entry = entries.get(slot);
+        if (entry != null && entry.hash == hash
+                && entry.data.length == data.length
+                && Arrays.equals(entry.data, data)) {
+            hits.inc();
+            return entry.connector;
+        }
+        misses.inc();
+        IConnector connector = decoder.apply(data);
+        if (connector != null) {
+            entries.set(slot, new Entry(hash, data, connector));
+        }
+        return connector;
+    }
+
+    /**
+     * Fast non-cryptographic hash of session data, 32-bit FNV-1a seeded
+     * with the length and finished with a final avalanche so that the low
+     * bits used to select a slot are well distributed.
+     * @param data Session data to hash.
+     * @return See above.
+     */
+    static int hash(byte[] data) {
+        int h = 0x811c9dc5 ^ data.length;
+        for (int i = 0; i < data.length; i++) {
+            h = (h ^ data[i]) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Verifies the hash Django prepends to database backed session data,
+ * equivalent to <code>SessionBase._hash()</code>, a SHA-1
+ * <code>salted_hmac()</code> using the <code>SECRET_KEY</code>.
+ */
+public class DjangoSessionSignature {
+
+    /**
+     * Key salt used by <code>django.contrib.sessions</code> database backed
+     * session stores, the module name followed by the store class name.
+     */
+    public static final String KEY_SALT =
+            "django.contrib.sessionsSessionStore";
+
+    /** HMAC algorithm used by <code>salted_hmac()</code> */
+    private static final String ALGORITHM = "HmacSHA1";
+
+    /** Hexadecimal digits used to encode the HMAC */
+    private static final byte[] HEX =
+            "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /** HMAC key, SHA-1 of the key salt followed by the secret key */
+    private final SecretKeySpec key;
+
+    /**
+     * Constructor.
+     * @param secretKey Django <code>SECRET_KEY</code>.
+     */
+    public DjangoSessionSignature(String secretKey) {
+        this(secretKey, KEY_SALT);
+    }
+
+    /**
+     * Constructor.
+     * @param secretKey Django <code>SECRET_KEY</code>.
+     * @param keySalt Key salt of the session store.
+     */
+    public DjangoSessionSignature(String secretKey, String keySalt) {
+        try {
+            byte[] derived = MessageDigest.getInstance("SHA-1").digest(
+                    (keySalt + secretKey).getBytes(StandardCharsets.UTF_8));
+            key = new SecretKeySpec(derived, ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Computes the hexadecimal HMAC of serialized session data.
+     * @param serialized Serialized session data.
+     * @return ASCII encoded hexadecimal HMAC.
+     */
+    public byte[] sign(byte[] serialized) {
+        return sign(serialized, 0, serialized.length);
+    }
+
+    private byte[] sign(byte[] data, int offset, int length) {
+        byte[] hmac;
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update(data, offset, length);
+            hmac = mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hex = new byte[hmac.length * 2];
+        for (int i = 0; i < hmac.length; i++) {
+            hex[i * 2] = HEX[(hmac[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX[hmac[i] & 0x0f];
+        }
+        return hex;
+    }
+
+    /**
+     * Verifies decoded session data of the form <code>hash:serialized</code>
+     * in constant time.
+     * @param sessionData Decoded session data.
+     * @param separator Index of the <code>:</code> separating the hash from
+     * the serialized session data.
+     * @return <code>true</code> if the hash matches.
+     */
+    public boolean verify(byte[] sessionData, int separator) {
+        if (separator < 0) {
+            return false;
+        }
+        byte[] expected = sign(
+                sessionData, separator + 1,
+                sessionData.length - separator - 1);
+        byte[] actual = new byte[separator];
+        System.arraycopy(sessionData, 0, actual, 0, separator);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+}
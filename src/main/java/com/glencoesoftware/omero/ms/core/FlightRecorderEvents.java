@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events emitted from the core's hot paths.  Events
+ * are only committed while a recording has them enabled; otherwise the
+ * cost is an allocation the JIT can usually eliminate and a flag check.
+ * <p>
+ * Java 8 runtimes older than 8u262 do not have <code>jdk.jfr</code>, in
+ * which case the factory methods return <code>null</code> and the event
+ * classes are never loaded.  Callers must therefore only ever create events
+ * through the factory methods and end them through the static
+ * <code>commit</code> methods, which accept <code>null</code>.
+ */
+public final class FlightRecorderEvents {
+
+    /** Whether or not <code>jdk.jfr</code> is available */
+    static final boolean AVAILABLE = isAvailable();
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private FlightRecorderEvents() {
+    }
+
+    /** OMERO session key resolution by the session request handler */
+    @Name("com.glencoesoftware.omero.ms.core.SessionLookup")
+    @Label("Session Lookup")
+    @Description("OMERO session key resolution of a request, including "
+            + "any session store lookup")
+    @Category({"OMERO", "Microservice"})
+    @StackTrace(false)
+    static final class SessionLookup extends Event {
+
+        @Label("Source")
+        @Description("Where the OMERO session key was found: header, "
+                + "bsession, token, cache, store or none")
+        String source;
+
+        @Label("Found")
+        boolean found;
+    }
+
+    /** Decode of pickled OMERO.web session data */
+    @Name("com.glencoesoftware.omero.ms.core.PickleDecode")
+    @Label("Pickle Decode")
+    @Description("Decode of pickled OMERO.web session data")
+    @Category({"OMERO", "Microservice"})
+    @StackTrace(false)
+    static final class PickleDecode extends Event {
+
+        @Label("Bytes")
+        @DataAmount
+        int bytes;
+
+        @Label("Ops")
+        int ops;
+    }
+
+    /** Join or close of an OMERO session */
+    @Name("com.glencoesoftware.omero.ms.core.OmeroSession")
+    @Label("OMERO Session")
+    @Description("Join or close of an OMERO session")
+    @Category({"OMERO", "Microservice"})
+    @StackTrace(false)
+    static final class OmeroSession extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    /** Redis cache operation */
+    @Name("com.glencoesoftware.omero.ms.core.RedisCache")
+    @Label("Redis Cache")
+    @Description("Redis cache get or set")
+    @Category({"OMERO", "Microservice"})
+    @StackTrace(false)
+    static final class RedisCache extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Key Size")
+        @DataAmount
+        int keySize;
+
+        @Label("Value Size")
+        @DataAmount
+        int valueSize;
+    }
+
+    /**
+     * @return A started session lookup event or <code>null</code> if
+     * <code>jdk.jfr</code> is not available.
+     */
+    static SessionLookup sessionLookup() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        SessionLookup event = new SessionLookup();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and, if enabled, commits a session lookup event.
+     * @param event Event or <code>null</code>.
+     * @param source Where the OMERO session key was found.
+     * @param found Whether or not an OMERO session key was found.
+     */
+    static void commit(SessionLookup event, String source, boolean found) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.found = found;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return A started pickle decode event or <code>null</code> if
+     * <code>jdk.jfr</code> is not available.
+     */
+    static PickleDecode pickleDecode() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        PickleDecode event = new PickleDecode();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and, if enabled, commits a pickle decode event.
+     * @param event Event or <code>null</code>.
+     * @param bytes Size of the pickled session data.
+     * @param ops Number of pickle ops parsed.
+     */
+    static void commit(PickleDecode event, int bytes, int ops) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.ops = ops;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return A started OMERO session event or <code>null</code> if
+     * <code>jdk.jfr</code> is not available.
+     */
+    static OmeroSession omeroSession() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        OmeroSession event = new OmeroSession();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and, if enabled, commits an OMERO session event.
+     * @param event Event or <code>null</code>.
+     * @param operation <code>join</code> or <code>close</code>.
+     * @param success Whether or not the operation succeeded.
+     */
+    static void commit(
+            OmeroSession event, String operation, boolean success) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return A started Redis cache event or <code>null</code> if
+     * <code>jdk.jfr</code> is not available.
+     */
+    static RedisCache redisCache() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        RedisCache event = new RedisCache();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and, if enabled, commits a Redis cache event.
+     * @param event Event or <code>null</code>.
+     * @param operation <code>get</code> or <code>set</code>.
+     * @param keySize Size of the key in bytes.
+     * @param valueSize Size of the value in bytes, <code>0</code> if there
+     * is none.
+     */
+    static void commit(RedisCache event, String operation,
+            int keySize, int valueSize) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.keySize = keySize;
+            event.valueSize = valueSize;
+            event.commit();
+        }
+    }
+
+}
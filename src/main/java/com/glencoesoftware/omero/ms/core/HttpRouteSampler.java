@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.prometheus.client.Counter;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Trace sampler keyed on HTTP method and Vert.x route path, such as
+ * <code>GET /tile/:imageId/:z/:c/:t</code>, which limits the number of
+ * traces started per second for each route.  Hot routes can therefore be
+ * traced lightly while rare routes are traced fully.
+ * <p>
+ * In adaptive mode a global budget of traces per second is shared between
+ * all routes every second based on their request rate over the previous
+ * second: routes requested less often than their fair share are traced
+ * fully and the remainder of the budget is split evenly between the busier
+ * routes.  Configured per route limits still act as caps.
+ * <p>
+ * Decisions only apply to requests without an upstream sampling decision.
+ */
+public class HttpRouteSampler {
+
+    /** Sampling decisions */
+    private static final Counter DECISIONS = Counter.build()
+            .name("httpRouteSamplerDecisions")
+            .labelNames("sampled")
+            .help("HTTP route sampler decisions")
+            .register();
+
+    private static final Counter.Child SAMPLED = DECISIONS.labels("true");
+
+    private static final Counter.Child NOT_SAMPLED = DECISIONS.labels("false");
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Sampling state of a single route.  The rate limit is a generic cell
+     * rate algorithm allowing up to one second's worth of traces in a
+     * burst.
+     */
+    static final class Route {
+
+        /** Configured limit in traces per second or <code>null</code> */
+        private final Double limit;
+
+        /**
+         * Nanoseconds between traces or <code>-1</code> if none are
+         * allowed
+         */
+        private volatile long interval;
+
+        /** Theoretical arrival time of the next trace */
+        private final AtomicLong next = new AtomicLong(Long.MIN_VALUE);
+
+        /** Requests since the last adjustment, adaptive mode only */
+        private final AtomicLong requests = new AtomicLong();
+
+        /** Requests per second as of the last adjustment */
+        private volatile double requestRate;
+
+        private Route(Double limit, double rate) {
+            this.limit = limit;
+            setRate(rate);
+        }
+
+        /**
+         * @return Traces per second the route would use if unconstrained by
+         * the budget.
+         */
+        private double demand() {
+            return limit != null
+                    ? Math.min(limit, requestRate) : requestRate;
+        }
+
+        private void setRate(double rate) {
+            interval = rate <= 0 ? -1 : (long) (SECOND / rate);
+        }
+
+        private boolean tryAcquire(long now) {
+            long interval = this.interval;
+            if (interval < 0) {
+                return false;
+            }
+            while (true) {
+                long next = this.next.get();
+                long start = next == Long.MIN_VALUE || next - now < 0
+                        ? now : next;
+                if (start - now > Math.max(0L, SECOND - interval)) {
+                    return false;
+                }
+                if (this.next.compareAndSet(next, start + interval)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /** Configured limits by method and route path */
+    private final Map<String, Map<String, Double>> limits =
+            new ConcurrentHashMap<String, Map<String, Double>>();
+
+    /**
+     * Traces per second for routes without a configured limit or
+     * <code>null</code> to defer to the HTTP sampler.
+     */
+    private final Double defaultLimit;
+
+    /** Global budget in traces per second or <code>null</code> */
+    private final Double budget;
+
+    /** Routes by method and route path */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Route>>
+            routes = new ConcurrentHashMap<
+                String, ConcurrentHashMap<String, Route>>();
+
+    /** {@link System#nanoTime()} of the next adaptive adjustment */
+    private final AtomicLong nextAdjustment;
+
+    /**
+     * Creates a sampler from configuration of the form:
+     * <pre>
+     * "http-sampler": {
+     *     "traces_per_second": 10,
+     *     "routes": [
+     *         {"method": "GET", "path": "/tile/*", "traces_per_second": 1}
+     *     ],
+     *     "budget": 100
+     * }
+     * </pre>
+     * <code>traces_per_second</code> is the limit for routes without one of
+     * their own, if absent such routes defer to the HTTP sampler, and
+     * <code>budget</code> enables adaptive mode.
+     * @param config Sampler configuration or <code>null</code> in which case
+     * no sampler is created.
+     * @return See above.
+     */
+    public static HttpRouteSampler fromConfig(JsonObject config) {
+        if (config == null) {
+            return null;
+        }
+        HttpRouteSampler sampler = new HttpRouteSampler(
+                config.getDouble("traces_per_second"),
+                config.getDouble("budget"));
+        JsonArray routes = config.getJsonArray("routes", new JsonArray());
+        for (int i = 0; i < routes.size(); i++) {
+            JsonObject route = routes.getJsonObject(i);
+            sampler.setLimit(route.getString("method"),
+                    route.getString("path"),
+                    route.getDouble("traces_per_second"));
+        }
+        return sampler;
+    }
+
+    /**
+     * Constructor.
+     * @param defaultLimit Traces per second for routes without a configured
+     * limit or <code>null</code> to defer to the HTTP sampler.
+     * @param budget Global budget in traces per second, enabling adaptive
+     * mode, or <code>null</code>.
+     */
+    public HttpRouteSampler(Double defaultLimit, Double budget) {
+        this.defaultLimit = defaultLimit;
+        this.budget = budget;
+        this.nextAdjustment = new AtomicLong(System.nanoTime() + SECOND);
+    }
+
+    /**
+     * Sets the limit of a route.  Must be called before the route is first
+     * sampled.
+     * @param method HTTP method.
+     * @param path Vert.x route path.
+     * @param tracesPerSecond Traces per second.
+     */
+    public void setLimit(String method, String path, double tracesPerSecond) {
+        limits.computeIfAbsent(method,
+                k -> new ConcurrentHashMap<String, Double>())
+            .put(path, tracesPerSecond);
+    }
+
+    /**
+     * Decides whether or not to sample a request.
+     * @param method HTTP method.
+     * @param path Vert.x route path of the matched route.
+     * @return Whether or not to sample the request or <code>null</code> to
+     * defer to the HTTP sampler.
+     */
+    public Boolean trySample(String method, String path) {
+        long now = System.nanoTime();
+        Route route = route(method, path == null ? "" : path);
+        if (route == null) {
+            return null;
+        }
+        if (budget != null) {
+            route.requests.incrementAndGet();
+            long adjustment = nextAdjustment.get();
+            if (now - adjustment >= 0 && nextAdjustment.compareAndSet(
+                    adjustment, now + SECOND)) {
+                adjust(now - adjustment + SECOND);
+            }
+        }
+        if (route.tryAcquire(now)) {
+            SAMPLED.inc();
+            return true;
+        }
+        NOT_SAMPLED.inc();
+        return false;
+    }
+
+    /**
+     * @return The sampling state of a route, created on first use, or
+     * <code>null</code> if decisions on the route are deferred.
+     */
+    private Route route(String method, String path) {
+        ConcurrentHashMap<String, Route> byPath = routes.get(method);
+        if (byPath == null) {
+            byPath = routes.computeIfAbsent(
+                    method, k -> new ConcurrentHashMap<String, Route>());
+        }
+        Route route = byPath.get(path);
+        if (route != null) {
+            return route;
+        }
+        Map<String, Double> byPathLimits = limits.get(method);
+        Double limit = byPathLimits == null ? null : byPathLimits.get(path);
+        if (limit == null && defaultLimit == null && budget == null) {
+            return null;
+        }
+        // Until the first adjustment new routes are only limited by
+        // configuration or the whole budget
+        double rate = limit != null ? limit
+                : defaultLimit != null ? defaultLimit : budget;
+        return byPath.computeIfAbsent(path, k -> new Route(limit, rate));
+    }
+
+    /**
+     * Shares the budget between routes based on their request rates.
+     * @param elapsed Nanoseconds since the previous adjustment.
+     */
+    void adjust(long elapsed) {
+        List<Route> all = new ArrayList<Route>();
+        for (ConcurrentHashMap<String, Route> byPath : routes.values()) {
+            for (Route route : byPath.values()) {
+                route.requestRate = route.requests.getAndSet(0)
+                        * (double) SECOND / Math.max(1L, elapsed);
+                all.add(route);
+            }
+        }
+        Collections.sort(all, Comparator.comparingDouble(Route::demand));
+        double remaining = budget;
+        for (int i = 0; i < all.size(); i++) {
+            Route route = all.get(i);
+            double share = remaining / (all.size() - i);
+            // Always allow idle routes a trace so they are not starved
+            // when they next become active, within their configured limit
+            double floor = Math.min(1.0, share);
+            if (route.limit != null) {
+                floor = Math.min(floor, route.limit);
+            }
+            double rate = Math.max(Math.min(route.demand(), share), floor);
+            remaining -= rate;
+            route.setRate(rate);
+        }
+    }
+
+    /**
+     * @return The sampling state of a route or <code>null</code> if it has
+     * not been sampled yet.
+     */
+    Route getRoute(String method, String path) {
+        Map<String, Route> byPath = routes.get(method);
+        return byPath == null ? null : byPath.get(path);
+    }
+
+    /**
+     * @return Traces per second currently allowed on a route or
+     * <code>0</code> if it has not been sampled yet.
+     */
+    double getRate(String method, String path) {
+        Route route = getRoute(method, path);
+        if (route == null || route.interval < 0) {
+            return 0;
+        }
+        return (double) SECOND / route.interval;
+    }
+
+}
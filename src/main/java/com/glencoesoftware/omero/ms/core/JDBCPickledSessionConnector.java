@@ -30,11 +30,58 @@ public class JDBCPickledSessionConnector extends PickledSessionConnector {
             LoggerFactory.getLogger(JDBCPickledSessionConnector.class);
 
     public JDBCPickledSessionConnector(String serialized) {
+        this(serialized, null);
+    }
+
+    /**
+     * Constructor.
+     * @param serialized Base64 encoded session data as stored in the
+     * <code>django_session</code> table.
+     * @param signature Used to verify the hash which precedes the pickled
+     * session data or <code>null</code> if it should not be verified.
+     * @throws IllegalArgumentException If the hash does not match.
+     */
+    public JDBCPickledSessionConnector(
+            String serialized, DjangoSessionSignature signature) {
+        init(sessionData(serialized, signature));
+    }
+
+    /**
+     * Extracts the pickled session data from session data as stored in the
+     * <code>django_session</code> table.
+     * @param serialized Base64 encoded session data.
+     * @param signature Used to verify the hash which precedes the pickled
+     * session data or <code>null</code> if it should not be verified.
+     * @return Pickled session data, in the same form as stored by the Django
+     * cache session storage engine.
+     * @throws IllegalArgumentException If the hash does not match.
+     */
+    public static byte[] sessionData(
+            String serialized, DjangoSessionSignature signature) {
         byte[] b64bytes = Base64.getDecoder().decode(serialized);
         int idx = ArrayUtils.indexOf(b64bytes, (byte)':');
-        byte[] sessionData = Arrays.copyOfRange(
-                b64bytes, idx + 1, b64bytes.length);
-        init(sessionData);
+        if (signature != null && !signature.verify(b64bytes, idx)) {
+            throw new IllegalArgumentException(
+                    "Session data signature verification failed");
+        }
+        return Arrays.copyOfRange(b64bytes, idx + 1, b64bytes.length);
+    }
+
+    /**
+     * Decodes session data as stored in the <code>django_session</code>
+     * table into its compact representation, which retains none of the
+     * parse state.
+     * @param serialized Base64 encoded session data.
+     * @param signature Used to verify the hash which precedes the pickled
+     * session data or <code>null</code> if it should not be verified.
+     * @return See above.
+     * @throws IllegalArgumentException If the hash does not match.
+     * @see CompactConnector
+     */
+    public static CompactConnector decode(
+            String serialized, DjangoSessionSignature signature) {
+        return CompactConnector.copyOf(
+                new JDBCPickledSessionConnector(serialized, signature));
     }
 
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks a percentile of recently observed latencies.  Samples are counted
+ * in a fixed number of logarithmically sized buckets spanning the
+ * configured bounds, so recording is a lock free increment with no sorting
+ * or allocation.  Once per window of samples the thread recording the last
+ * sample of the window scans the buckets, resetting them, and publishes the
+ * upper bound of the bucket containing the percentile, so reading it is a
+ * single volatile load.
+ */
+public class LatencyTracker {
+
+    /** Number of histogram buckets between the configured bounds */
+    static final int BUCKETS = 64;
+
+    /** Inclusive upper bound of each bucket in nanoseconds */
+    private final long[] bounds;
+
+    /** Samples counted in each bucket during the current window */
+    private final AtomicLongArray counts;
+
+    /** Number of samples after which the percentile is recomputed */
+    private final long window;
+
+    /** Total number of samples recorded */
+    private final AtomicLong count = new AtomicLong();
+
+    /** Percentile to track, between 0 and 1 */
+    private final double percentile;
+
+    /** Lower bound for the tracked value in nanoseconds */
+    private final long min;
+
+    /** Upper bound for the tracked value in nanoseconds */
+    private final long max;
+
+    /** Last computed percentile in nanoseconds */
+    private volatile long value;
+
+    /**
+     * Constructor.
+     * @param window Number of samples to compute the percentile over.
+     * @param percentile Percentile to track, between 0 and 1.
+     * @param initial Value in nanoseconds returned before the first window
+     * has been filled.
+     * @param min Lower bound for the tracked value in nanoseconds.
+     * @param max Upper bound for the tracked value in nanoseconds.
+     */
+    public LatencyTracker(
+            int window, double percentile, long initial, long min, long max) {
+        if (window < 1 || percentile <= 0 || percentile > 1 || min > max) {
+            throw new IllegalArgumentException(
+                    "Invalid latency tracker configuration");
+        }
+        this.window = window;
+        this.percentile = percentile;
+        this.min = min;
+        this.max = max;
+        this.value = clamp(initial);
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.bounds = new long[BUCKETS];
+        double base = Math.max(1, min);
+        double ratio = Math.pow(max / base, 1.0 / BUCKETS);
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            bounds[i] = clamp((long) Math.ceil(base * Math.pow(ratio, i + 1)));
+        }
+        bounds[BUCKETS - 1] = max;
+    }
+
+    /**
+     * Records a latency sample.
+     * @param nanos Observed latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        int index = Arrays.binarySearch(bounds, nanos);
+        if (index < 0) {
+            index = Math.min(-index - 1, BUCKETS - 1);
+        } else {
+            // Equal bounds are possible for narrow ranges, use the first
+            while (index > 0 && bounds[index - 1] == nanos) {
+                index--;
+            }
+        }
+        counts.incrementAndGet(index);
+        if (count.incrementAndGet() % window == 0) {
+            recompute();
+        }
+    }
+
+    /**
+     * @return Most recently computed percentile in nanoseconds, clamped to
+     * the configured bounds.
+     */
+    public long get() {
+        return value;
+    }
+
+    private void recompute() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            // Samples recorded concurrently are counted in the next window
+            snapshot[i] = counts.getAndSet(i, 0);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                value = bounds[i];
+                return;
+            }
+        }
+    }
+
+    private long clamp(long nanos) {
+        return Math.min(max, Math.max(min, nanos));
+    }
+
+}
@@ -18,14 +18,27 @@
 
 package com.glencoesoftware.omero.ms.core;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
 import org.slf4j.LoggerFactory;
 
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import zipkin2.Span;
 import zipkin2.reporter.AsyncReporter;
 
 /**
  * Zipkin reporter for logging traces instead of sending them
- * to a Zipkin server
+ * to a Zipkin server.
+ * <p>
+ * Reporting a span only places it in a bounded, lock free ring buffer; a
+ * background thread drains the buffer in batches and does the formatting
+ * and logging off the thread which finished the span, usually a Vert.x
+ * event loop.  Spans reported while the buffer is full or after the
+ * reporter has been closed are dropped and counted.
  * @author Kevin Kozlowski <kevin@glencoesoftware.com>
  *
  */
@@ -35,31 +48,192 @@ public class LogSpanReporter extends AsyncReporter<Span> {
     private static final org.slf4j.Logger log =
             LoggerFactory.getLogger(LogSpanReporter.class);
 
+    /** Spans dropped because the buffer was full or the reporter closed */
+    private static final Counter DROPPED_SPANS = Counter.build()
+            .name("logSpanReporterDroppedSpans")
+            .help("Spans dropped by the log span reporter")
+            .register();
+
+    /** Spans waiting to be logged */
+    private static final Gauge QUEUE_DEPTH = Gauge.build()
+            .name("logSpanReporterQueueDepth")
+            .help("Spans waiting to be logged by the log span reporter")
+            .register();
+
+    /** Default buffer capacity in spans */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** Default maximum number of spans logged per batch */
+    public static final int DEFAULT_BATCH_SIZE = 512;
+
+    /** Default interval between polls of an empty buffer in milliseconds */
+    public static final long DEFAULT_INTERVAL = 100;
+
+    /**
+     * Buffer slots; a <code>null</code> slot between <code>head</code> and
+     * <code>tail</code> has been claimed but not yet published.
+     */
+    private final AtomicReferenceArray<Span> slots;
+
+    /** <code>slots.length() - 1</code>, the length being a power of two */
+    private final int mask;
+
+    /** Maximum number of spans logged per batch */
+    private final int batchSize;
+
+    /** Interval between polls of an empty buffer in nanoseconds */
+    private final long interval;
+
+    /** Next sequence to be claimed by a producer */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next sequence to be consumed, only written by the consumer */
+    private volatile long head;
+
+    /** Set once the reporter has been closed */
+    private volatile boolean closed;
+
+    /** Background thread draining the buffer */
+    private final Thread consumer;
+
     /**
-     * Report the span - which in this case is just to log it
+     * Default constructor.  Buffers up to {@link #DEFAULT_CAPACITY} spans.
+     */
+    public LogSpanReporter() {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     * @param capacity Buffer capacity in spans, rounded up to a power of
+     * two.
+     * @param batchSize Maximum number of spans logged per batch.
+     * @param interval Interval between polls of an empty buffer in
+     * milliseconds.
+     */
+    public LogSpanReporter(int capacity, int batchSize, long interval) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<Span>(size);
+        mask = size - 1;
+        this.batchSize = batchSize;
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+        consumer = new Thread(this::drain, "log-span-reporter");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Report the span - which in this case is to enqueue it to be logged
      * @param span The span to report
      */
     @Override
     public void report(Span span) {
-        if (span != null) {
-            log.info(span.toString());
-        } else {
+        if (span == null) {
             log.info("Null span");
+            return;
+        }
+        if (closed) {
+            DROPPED_SPANS.inc();
+            return;
         }
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= slots.length()) {
+                DROPPED_SPANS.inc();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        QUEUE_DEPTH.inc();
+        slots.lazySet((int) sequence & mask, span);
     }
 
     /**
-     * Inherited from AsyncReporter. Noop in our case.
+     * @return Number of spans waiting to be logged.
+     */
+    public int getQueueDepth() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * Body of the background thread.  Logs batches of spans until the
+     * reporter has been closed and the buffer is empty.
+     */
+    private void drain() {
+        while (true) {
+            int drained = drainBatch();
+            if (drained > 0) {
+                continue;
+            }
+            if (closed && head == tail.get()) {
+                return;
+            }
+            LockSupport.parkNanos(this, interval);
+        }
+    }
+
+    /**
+     * Logs up to one batch of published spans in sequence order.
+     * @return Number of spans logged.
+     */
+    private int drainBatch() {
+        long sequence = head;
+        int drained = 0;
+        while (drained < batchSize) {
+            int index = (int) sequence & mask;
+            Span span = slots.get(index);
+            if (span == null) {
+                // Empty or claimed but not yet published
+                break;
+            }
+            slots.lazySet(index, null);
+            sequence++;
+            head = sequence;
+            drained++;
+            try {
+                log.info(span.toString());
+            } catch (Exception e) {
+                log.error("Failed to log span", e);
+            }
+        }
+        if (drained > 0) {
+            QUEUE_DEPTH.dec(drained);
+        }
+        return drained;
+    }
+
+    /**
+     * Blocks until every span reported before the call has been logged.
      */
     @Override
     public void flush() {
+        long target = tail.get();
+        while (head - target < 0 && consumer.isAlive()) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
     }
 
     /**
-     * Inherited from AsyncReporter. Noop in our case.
+     * Stops accepting spans and blocks until every span already reported
+     * has been logged.
      */
     @Override
     public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // Spans claimed concurrently with closing are never logged
+        long stranded = tail.get() - head;
+        if (stranded > 0) {
+            DROPPED_SPANS.inc(stranded);
+            QUEUE_DEPTH.dec(stranded);
+        }
     }
 
 }
@@ -18,6 +18,7 @@
 
 package com.glencoesoftware.omero.ms.core;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -31,9 +32,10 @@ import brave.http.HttpServerHandler;
 import brave.http.HttpTracing;
 import brave.propagation.TraceContext.Extractor;
 import brave.propagation.TraceContext.Injector;
+import brave.propagation.TraceContextOrSamplingFlags;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
-import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Route;
 import io.vertx.ext.web.RoutingContext;
 
 /**
@@ -59,6 +61,15 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
      */
     final List<String> tags;
 
+    /** Tags assigned to the span and where their values come from */
+    final Tag[] tagExtractors;
+
+    /**
+     * Whether or not to skip tagging spans which are recorded locally but
+     * not sampled
+     */
+    final boolean skipUnsampled;
+
     /**
      * Injector for putting the TracingContext into the RoutingContext
      */
@@ -69,8 +80,16 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
      */
     final Extractor<HttpServerRequest> extractor;
 
+    /**
+     * Extractor which applies the route sampler's decision to requests
+     * without an upstream sampling decision or <code>null</code> if there is
+     * no route sampler
+     */
+    final Extractor<RoutingContext> routeExtractor;
+
     /** Our HTTP server handler implementation */
-    final HttpServerHandler<HttpServerRequest, HttpServerResponse> serverHandler;
+    final HttpServerHandler<HttpServerRequest, VertxHttpServerAdapter.Response>
+            serverHandler;
 
     /**
      * Constructor.
@@ -79,7 +98,52 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
      * and assigned as tags to the span.
      */
     public OmeroHttpTracingHandler(HttpTracing httpTracing, List<String> tags) {
-        this.tags = tags;
+        this(httpTracing, tags, null);
+    }
+
+    /**
+     * Constructor.
+     * @param httpTracing Configured brave {@link HttpTracing}
+     * @param tags Keys to be retrieved from the {@link RoutingContext}
+     * and assigned as tags to the span.
+     * @param routeSampler Sampler keyed on method and route path, consulted
+     * before the {@link HttpTracing} sampler, or <code>null</code>.  The
+     * decision is keyed on the route the handler runs on, so with a route
+     * sampler the handler should be added to each route to be sampled ahead
+     * of its other handlers, for example
+     * <code>router.get("/tile/:imageId").handler(tracingHandler)</code>.
+     * Regular expression routes are keyed on their name, which defaults to
+     * the expression, and routes without a path, such as catch-all routes,
+     * on the empty path.
+     */
+    public OmeroHttpTracingHandler(HttpTracing httpTracing, List<String> tags,
+            HttpRouteSampler routeSampler) {
+        this(httpTracing, Tag.contextKeys(tags), routeSampler, false);
+    }
+
+    /**
+     * Constructor.
+     * @param httpTracing Configured brave {@link HttpTracing}
+     * @param tags Tags to be assigned to the span, retrieved from the
+     * {@link RoutingContext}, request headers, path parameters or the
+     * matched route.
+     * @see Tag#parse(String)
+     * @param routeSampler Sampler keyed on method and route path, consulted
+     * before the {@link HttpTracing} sampler, or <code>null</code>.
+     * @see #OmeroHttpTracingHandler(HttpTracing, List, HttpRouteSampler)
+     * @param skipUnsampled Whether or not to skip tagging spans which are
+     * recorded locally, for example for tail sampling, but not sampled.
+     * Spans which are not recorded at all are never tagged.
+     */
+    public OmeroHttpTracingHandler(HttpTracing httpTracing, List<Tag> tags,
+            HttpRouteSampler routeSampler, boolean skipUnsampled) {
+        this.tagExtractors = tags == null
+                ? new Tag[0] : tags.toArray(new Tag[tags.size()]);
+        this.tags = new ArrayList<String>(tagExtractors.length);
+        for (Tag tag : tagExtractors) {
+            this.tags.add(tag.name);
+        }
+        this.skipUnsampled = skipUnsampled;
         this.tracer = httpTracing.tracing().tracer();
         injector =
                 httpTracing
@@ -95,6 +159,20 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
                     .extractor((carrier, key) -> {
                         return carrier.getHeader(key);
                     });
+        routeExtractor = routeSampler == null ? null : carrier -> {
+            TraceContextOrSamplingFlags extracted =
+                    extractor.extract(carrier.request());
+            if (extracted.sampled() != null) {
+                return extracted;
+            }
+            Route route = carrier.currentRoute();
+            String path = route == null ? null
+                    : route.isRegexPath() ? route.getName() : route.getPath();
+            Boolean sampled = routeSampler.trySample(
+                    carrier.request().method().name(), path);
+            return sampled == null
+                    ? extracted : extracted.sampled(sampled.booleanValue());
+        };
         serverHandler = HttpServerHandler.create(
                 httpTracing, new VertxHttpServerAdapter());
     }
@@ -116,12 +194,146 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
             return;
         }
 
-        Span span = serverHandler.handleReceive(extractor, context.request());
-        TracingEndHandler handler = new TracingEndHandler(context, span, tags);
+        Span span = routeExtractor == null
+                ? serverHandler.handleReceive(extractor, context.request())
+                : serverHandler.handleReceive(
+                        routeExtractor, context, context.request());
+        TracingEndHandler handler = new TracingEndHandler(context, span);
         context.put(TracingEndHandler.class.getName(), handler);
         context.addHeadersEndHandler(handler);
-        try (SpanInScope ws = tracer.withSpanInScope(span)) {
+        SpanInScope ws = tracer.withSpanInScope(span);
+        try {
             context.next();
+        } finally {
+            ws.close();
+        }
+    }
+
+    /**
+     * A span tag and where its value is retrieved from at the end of a
+     * request.
+     */
+    public static final class Tag {
+
+        /** Value put on the {@link RoutingContext} */
+        static final int CONTEXT = 0;
+
+        /** Request header */
+        static final int HEADER = 1;
+
+        /** Path parameter */
+        static final int PATH_PARAM = 2;
+
+        /** Matched route path */
+        static final int ROUTE = 3;
+
+        /** Tag name */
+        final String name;
+
+        /** Source of the value */
+        final int source;
+
+        /** Context key, header name or path parameter name */
+        final String key;
+
+        private Tag(String name, int source, String key) {
+            this.name = name;
+            this.source = source;
+            this.key = key;
+        }
+
+        /**
+         * @param key Key of a value put on the {@link RoutingContext}.
+         * @return A tag named after the key.
+         */
+        public static Tag context(String key) {
+            return new Tag(key, CONTEXT, key);
+        }
+
+        /**
+         * @param name Request header name.
+         * @return A tag named after the header.
+         */
+        public static Tag header(String name) {
+            return new Tag(name, HEADER, name);
+        }
+
+        /**
+         * @param name Path parameter name.
+         * @return A tag named after the path parameter.
+         */
+        public static Tag pathParam(String name) {
+            return new Tag(name, PATH_PARAM, name);
+        }
+
+        /**
+         * @return A tag named <code>http.route</code> with the path of the
+         * matched route.
+         */
+        public static Tag route() {
+            return new Tag("http.route", ROUTE, null);
+        }
+
+        /**
+         * Parses a tag specification, for example from configuration:
+         * <code>header:name</code> for a request header,
+         * <code>param:name</code> for a path parameter, <code>route</code>
+         * for the matched route path and <code>context:key</code> or any
+         * other string for a {@link RoutingContext} key.  Only tags
+         * explicitly parsed are interpreted this way; the constructors
+         * taking a list of keys always treat them as routing context keys.
+         * @param spec Tag specification.
+         * @return See above.
+         */
+        public static Tag parse(String spec) {
+            if (spec.startsWith("header:")) {
+                return header(spec.substring("header:".length()));
+            }
+            if (spec.startsWith("param:")) {
+                return pathParam(spec.substring("param:".length()));
+            }
+            if (spec.startsWith("context:")) {
+                return context(spec.substring("context:".length()));
+            }
+            if (spec.equals("route")) {
+                return route();
+            }
+            return context(spec);
+        }
+
+        /**
+         * @param keys Routing context keys or <code>null</code>.
+         * @return A tag for each key or <code>null</code> if
+         * <code>keys</code> is.
+         */
+        static List<Tag> contextKeys(List<String> keys) {
+            if (keys == null) {
+                return null;
+            }
+            List<Tag> tags = new ArrayList<Tag>(keys.size());
+            for (String key : keys) {
+                tags.add(context(key));
+            }
+            return tags;
+        }
+
+        /**
+         * @param context Routing context of the request.
+         * @return The tag value or <code>null</code> if it is absent.
+         */
+        String extract(RoutingContext context) {
+            switch (source) {
+                case HEADER:
+                    return context.request().getHeader(key);
+                case PATH_PARAM:
+                    return context.pathParam(key);
+                case ROUTE:
+                    return context.currentRoute() == null
+                            ? null : context.currentRoute().getPath();
+                default:
+                    Object value = context.get(key);
+                    return value == null ? null : value.toString();
+            }
         }
     }
 
@@ -141,21 +353,14 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
         /** Whether or not the request has completed */
         final AtomicBoolean finished = new AtomicBoolean();
 
-        /** Keys in the {@link RoutingContext} to be pulled as span tags */
-        final List<String> tags;
-
         /**
          * Constructor.
-         * @param httpTracing Configured brave {@link HttpTracing}
+         * @param context The routing context of the request being traced
          * @param span The span to tag and finish
-         * @param tags Keys to be retrieved from the {@link RoutingContext}
-         * and assigned as tags to the span.
          */
-        TracingEndHandler(
-                RoutingContext context, Span span, List<String> tags) {
+        TracingEndHandler(RoutingContext context, Span span) {
             this.context = context;
             this.span = span;
-            this.tags = tags;
         }
 
         /**
@@ -167,15 +372,17 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
         public void handle(Void event) {
             // Tags are added to the span at the end of the request as values
             // will be put on the context as the request is being fulfilled
-            if (tags != null) {
-                for (String t : tags) {
+            if (tagExtractors.length > 0 && !span.isNoop() && !(skipUnsampled
+                    && !Boolean.TRUE.equals(span.context().sampled()))) {
+                for (Tag tag : tagExtractors) {
                     try {
-                        String value = context.get(t);
+                        String value = tag.extract(context);
                         if (value != null) {
-                            span.tag(t, value);
+                            span.tag(tag.name, value);
                         }
                     } catch (Exception e) {
-                        log.error("Failed to assign tag " + t, e);
+                        // The span must still be finished below
+                        log.error("Failed to assign tag " + tag.name, e);
                     }
                 }
             }
@@ -183,16 +390,13 @@ public class OmeroHttpTracingHandler implements Handler<RoutingContext> {
             if (!finished.compareAndSet(false, true)) {
                 return;
             }
-            VertxHttpServerAdapter.setCurrentMethodAndPath(
-                context.request().method().name(),
-                context.currentRoute().getPath()
-            );
-            try {
-                serverHandler.handleSend(
-                        context.response(), context.failure(), span);
-            } finally {
-                VertxHttpServerAdapter.setCurrentMethodAndPath(null, null);
-            }
+            serverHandler.handleSend(
+                    new VertxHttpServerAdapter.Response(
+                        context.response(),
+                        context.request().method().name(),
+                        context.currentRoute() == null
+                            ? null : context.currentRoute().getPath()),
+                    context.failure(), span);
         }
     }
 }
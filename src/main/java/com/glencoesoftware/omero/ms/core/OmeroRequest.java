@@ -23,10 +23,6 @@ import org.slf4j.LoggerFactory;
 
 import Glacier2.CannotCreateSessionException;
 import Glacier2.PermissionDeniedException;
-import brave.ScopedSpan;
-import brave.Span;
-import brave.Tracer;
-import brave.Tracing;
 import omero.ServerError;
 
 
@@ -52,7 +48,7 @@ public class OmeroRequest implements Closeable {
      * {@link #close()}.  This is important as the outermost enclosing span
      * may be finished by the time {@link #close()} is called.
      */
-    private final Span closeSessionSpan;
+    private final TraceSpan closeSessionSpan;
 
     /**
      * Default constructor. The session is joined once the instance has been
@@ -73,6 +69,37 @@ public class OmeroRequest implements Closeable {
     public OmeroRequest(String host, int port, String omeroSessionKey)
             throws PermissionDeniedException, CannotCreateSessionException,
                 ServerError {
+        this(host, port, omeroSessionKey, null);
+    }
+
+    /**
+     * Constructor which guards joining the session with a circuit breaker.
+     * The session is joined once the instance has been constructed.
+     * {@link #execute(OmeroRequestHandler)} can be called as soon as
+     * required.  Only communication failures with the OMERO server
+     * (<code>Ice.LocalException</code>) are counted as failures by the
+     * circuit breaker.
+     * @param host OMERO server host.
+     * @param port OMERO server port.
+     * @param omeroSessionKey OMERO session key which will be used to join an
+     * active session.
+     * @param circuitBreaker Circuit breaker shared by all requests to the
+     * OMERO server or <code>null</code> if one should not be used.
+     * @throws PermissionDeniedException If there was a permissions related
+     * error joining the session. Should be considered an authentication
+     * failure.
+     * @throws CannotCreateSessionException If there was an unknown error
+     * creating the session. Should be considered an authentication failure.
+     * @throws ServerError If there is a server error joining an active
+     * session.
+     * @throws CircuitBreakerOpenException If the circuit breaker is open and
+     * no attempt to join the session was made.
+     */
+    public OmeroRequest(
+            String host, int port, String omeroSessionKey,
+            CircuitBreaker circuitBreaker)
+            throws PermissionDeniedException, CannotCreateSessionException,
+                ServerError {
         log.debug("Connecting to the server: {}, {}, {}",
                 host, port, omeroSessionKey);
         // Guard against bad input that may cause us big problems later
@@ -83,22 +110,52 @@ public class OmeroRequest implements Closeable {
         if (omeroSessionKey == null) {
             throw new PermissionDeniedException("Missing OMERO session key!");
         }
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            throw new CircuitBreakerOpenException(circuitBreaker.getName());
+        }
         this.omeroSessionKey = omeroSessionKey;
-        this.client = new omero.client(host, port);
-        Tracer tracer = Tracing.currentTracer();
-        ScopedSpan span = tracer.startScopedSpan("join_omero_session");
-        closeSessionSpan = tracer.nextSpan().name("close_omero_session");
-        span.tag("omero.session_key", omeroSessionKey);
+        // Every exit path must report to the circuit breaker, otherwise a
+        // half open probe would be leaked and the circuit never close
+        boolean reported = false;
         try {
-            client.joinSession(omeroSessionKey).detachOnDestroy();
-            log.debug("Successfully joined session: {}", omeroSessionKey);
-        } catch (Exception e) {
-            span.error(e);
-            log.debug("Failed to join session: {}", omeroSessionKey);
-            client.closeSession();
-            throw e;
+            this.client = new omero.client(host, port);
+            FlightRecorderEvents.OmeroSession join =
+                    FlightRecorderEvents.omeroSession();
+            boolean joined = false;
+            TraceSpan span = Traces.startScopedSpan("join_omero_session");
+            closeSessionSpan = Traces.nextSpan("close_omero_session");
+            span.tag("omero.session_key", omeroSessionKey);
+            try {
+                client.joinSession(omeroSessionKey).detachOnDestroy();
+                log.debug("Successfully joined session: {}", omeroSessionKey);
+                joined = true;
+                reported = true;
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess();
+                }
+            } catch (Exception e) {
+                reported = true;
+                if (circuitBreaker != null) {
+                    if (e instanceof Ice.LocalException) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        // The server responded, the session is simply not
+                        // valid
+                        circuitBreaker.onSuccess();
+                    }
+                }
+                span.error(e);
+                log.debug("Failed to join session: {}", omeroSessionKey);
+                client.closeSession();
+                throw e;
+            } finally {
+                span.finish();
+                FlightRecorderEvents.commit(join, "join", joined);
+            }
         } finally {
-            span.finish();
+            if (!reported && circuitBreaker != null) {
+                circuitBreaker.onFailure();
+            }
         }
     }
 
@@ -120,15 +177,20 @@ public class OmeroRequest implements Closeable {
      */
     @Override
     public void close() {
+        FlightRecorderEvents.OmeroSession close =
+                FlightRecorderEvents.omeroSession();
+        boolean closed = false;
         closeSessionSpan.start();
         try {
             client.closeSession();
             log.debug("Successfully closed session: {}", omeroSessionKey);
+            closed = true;
         } catch (Exception e) {
             closeSessionSpan.error(e);
             log.error("Exception while closing session: {}", omeroSessionKey);
         } finally {
             closeSessionSpan.finish();
+            FlightRecorderEvents.commit(close, "close", closed);
         }
     }
 
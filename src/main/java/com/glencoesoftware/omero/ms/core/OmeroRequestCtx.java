@@ -25,6 +25,7 @@ import io.vertx.core.MultiMap;
 
 import brave.Tracing;
 import brave.propagation.Propagation.Setter;
+import brave.propagation.TraceContext;
 import brave.propagation.TraceContext.Injector;
 
 /**
@@ -54,13 +55,13 @@ public abstract class OmeroRequestCtx {
      */
     public void injectCurrentTraceContext() {
         Tracing tracing = Tracing.current();
-        if (tracing == null) {
+        TraceContext context = Traces.currentContext();
+        if (tracing == null || context == null) {
             return;
         }
         Injector<Map<String, String>> injector =
                 tracing.propagation().injector(SETTER);
-        injector.inject(
-                Tracing.currentTracer().currentSpan().context(), traceContext);
+        injector.inject(context, traceContext);
     }
 
     /**
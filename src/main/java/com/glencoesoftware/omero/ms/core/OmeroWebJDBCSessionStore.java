@@ -19,14 +19,19 @@
 package com.glencoesoftware.omero.ms.core;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.LoggerFactory;
 
-import brave.ScopedSpan;
-import brave.Tracing;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -41,9 +46,23 @@ import io.vertx.ext.sql.SQLConnection;
  */
 public class OmeroWebJDBCSessionStore implements OmeroWebSessionStore{
 
-    /** SQL statement for retrieving session key from django_session table*/
+    /**
+     * SQL statement for retrieving session key from django_session table,
+     * along with the milliseconds until the session expires.
+     */
     private static final String SELECT_SESSION_SQL =
-        "select session_data from django_session where session_key = ?";
+        "select session_data, "
+        + "(extract(epoch from expire_date - now()) * 1000)::bigint "
+        + "from django_session "
+        + "where session_key = ?";
+
+    /**
+     * SQL statement for retrieving several session keys, passed comma
+     * separated, from django_session table in a single round trip
+     */
+    private static final String SELECT_SESSIONS_SQL =
+        "select session_key, session_data from django_session "
+        + "where session_key = any(string_to_array(?, ','))";
 
     /** logger */
     private static final org.slf4j.Logger log =
@@ -52,6 +71,18 @@ public class OmeroWebJDBCSessionStore implements OmeroWebSessionStore{
     /** Vertx Async JDBC client */
     private JDBCClient client;
 
+    /** Circuit breaker guarding PostgreSQL session lookups */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Verifies session data hashes or <code>null</code> if no
+     * <code>SECRET_KEY</code> has been configured.
+     */
+    private final DjangoSessionSignature signature;
+
+    /** Verified and decoded connectors keyed by their session data */
+    private final ConnectorDecodeCache connectorCache;
+
     /**
      * Constructor
      * @param url full database URL with connection parameters.
@@ -60,8 +91,39 @@ public class OmeroWebJDBCSessionStore implements OmeroWebSessionStore{
      * @since 3.3
      */
     public OmeroWebJDBCSessionStore(String url, Vertx vertx) {
+        this(new JsonObject().put(
+                "session-store", new JsonObject().put("uri", url)), vertx);
+    }
+
+    /**
+     * Constructor
+     * @param config Microservice wide configuration.  The full database URL
+     * is read from <code>session-store.uri</code> and the optional circuit
+     * breaker configuration from <code>session-store.circuit-breaker</code>.
+     * If <code>omero.web.secret_key</code> is set session data hashes are
+     * verified.  Up to <code>session-store.connector_cache_size</code>
+     * (default 1024) verified and decoded connectors are cached by session
+     * data so that verification and decoding are skipped for session data
+     * which has been seen recently.
+     * @see ConnectorDecodeCache
+     * @param vertx the vertx instance for this verticle
+     * @see CircuitBreaker#fromConfig(String, JsonObject)
+     */
+    public OmeroWebJDBCSessionStore(JsonObject config, Vertx vertx) {
+        JsonObject omeroWeb = config.getJsonObject(
+                "omero.web", new JsonObject());
+        String secretKey = omeroWeb.getString("secret_key");
+        signature = secretKey == null
+                ? null : new DjangoSessionSignature(secretKey);
+        JsonObject sessionStore = config.getJsonObject(
+                "session-store", new JsonObject());
+        connectorCache = new ConnectorDecodeCache("session_store_jdbc",
+                sessionStore.getInteger("connector_cache_size", 1024));
+        circuitBreaker = CircuitBreaker.fromConfig(
+                "session_store_jdbc",
+                sessionStore.getJsonObject("circuit-breaker"));
         client = JDBCClient.createShared(vertx, new JsonObject()
-            .put("url", url)
+            .put("url", sessionStore.getString("uri"))
             .put("driver_class", "org.postgresql.Driver")
             .put("max_pool_size", 30));
     }
@@ -77,7 +139,112 @@ public class OmeroWebJDBCSessionStore implements OmeroWebSessionStore{
         if (sessionData == null) {
             return null;
         }
-        return new JDBCPickledSessionConnector(sessionData);
+        // The hash is part of the session data so identical session data
+        // has already been verified
+        return connectorCache.get(
+                sessionData.getBytes(StandardCharsets.US_ASCII),
+                data -> JDBCPickledSessionConnector.decode(
+                        sessionData, signature));
+    }
+
+    /**
+     * Retrieves the raw session data text for a session key and the
+     * milliseconds until the session expires.
+     * @param sessionKey Django session key.
+     * @param spanName Name of the span to record the retrieval under.
+     * @return A new {@link CompletionStage} completed with the session data
+     * text and milliseconds until expiry, which is negative if the session
+     * has expired, or <code>null</code> if the session does not exist.
+     */
+    private CompletionStage<JsonArray> query(
+            String sessionKey, String spanName) {
+        return query(SELECT_SESSION_SQL, new JsonArray().add(sessionKey),
+                spanName, "omero_web.session_key", sessionKey,
+                results -> results.isEmpty() ? null : results.get(0));
+    }
+
+    /**
+     * Executes a session query guarded by the circuit breaker.
+     * @param sql Query to execute.
+     * @param params Query parameters.
+     * @param spanName Name of the span to record the query under.
+     * @param tagName Name of the tag to add to the span.
+     * @param tagValue Value of the tag to add to the span.
+     * @param mapper Maps the result rows.
+     * @return A new {@link CompletionStage} completed with the mapped result
+     * rows.
+     */
+    private <T> CompletionStage<T> query(
+            String sql, JsonArray params, String spanName,
+            String tagName, String tagValue,
+            Function<List<JsonArray>, T> mapper) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        if (!circuitBreaker.allowRequest()) {
+            future.completeExceptionally(
+                    new CircuitBreakerOpenException(circuitBreaker.getName()));
+            return future;
+        }
+        TraceSpan span = Traces.startScopedSpan(spanName);
+        span.tag(tagName, tagValue);
+        // Every exit path must report to the circuit breaker exactly once,
+        // including synchronous exceptions, so that half open probes are
+        // never leaked
+        AtomicBoolean reported = new AtomicBoolean();
+        try {
+            client.getConnection(result -> {
+                if (result.failed()) {
+                    report(reported, false);
+                    span.finish();
+                    future.completeExceptionally(result.cause());
+                    return;
+                }
+
+                try (final SQLConnection connection = result.result()) {
+                    connection.queryWithParams(sql, params, innerResult -> {
+                        if (innerResult.failed()) {
+                            report(reported, false);
+                            future.completeExceptionally(
+                                    innerResult.cause());
+                            return;
+                        }
+                        report(reported, true);
+                        try {
+                            future.complete(mapper.apply(
+                                    innerResult.result().getResults()));
+                        } catch (Exception e) {
+                            future.completeExceptionally(e);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    report(reported, false);
+                    future.completeExceptionally(e);
+                } finally {
+                    span.finish();
+                }
+            });
+        } catch (RuntimeException e) {
+            report(reported, false);
+            span.finish();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Reports the outcome of a call to the circuit breaker unless it has
+     * already been reported.
+     * @param reported Whether or not the outcome has been reported.
+     * @param success Whether or not the call succeeded.
+     */
+    private void report(AtomicBoolean reported, boolean success) {
+        if (!reported.compareAndSet(false, true)) {
+            return;
+        }
+        if (success) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure();
+        }
     }
 
     /* (non-Javadoc)
@@ -85,40 +252,81 @@ public class OmeroWebJDBCSessionStore implements OmeroWebSessionStore{
      */
     @Override
     public CompletionStage<IConnector> getConnector(String sessionKey) {
-        CompletableFuture<IConnector> future =
-                new CompletableFuture<IConnector>();
-        ScopedSpan span = Tracing.currentTracer().startScopedSpan("get_connector_jdbc_async");
-        span.tag("omero_web.session_key", sessionKey);
-        client.getConnection(result -> {
-            if (result.failed()) {
-                span.finish();
-                future.completeExceptionally(result.cause());
-                return;
+        return query(sessionKey, "get_connector_jdbc_async")
+                .thenApply(record -> {
+            try {
+                // Take the first column, first row
+                return getConnectorFromSessionData(
+                        record == null ? null : record.getString(0));
+            } catch (Exception e) {
+                log.error("Exception while unpickling connector", e);
             }
+            return null;
+        });
+    }
 
-            try (final SQLConnection connection = result.result()) {
-                connection.queryWithParams(SELECT_SESSION_SQL,
-                        new JsonArray().add(sessionKey), innerResult -> {
-                    if (innerResult.failed()) {
-                        future.completeExceptionally(innerResult.cause());
-                        return;
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getConnectors(java.util.Collection)
+     */
+    @Override
+    public CompletionStage<Map<String, IConnector>> getConnectors(
+            Collection<String> sessionKeys) {
+        // Django session keys are alphanumeric, anything containing the
+        // separator cannot exist
+        StringBuilder joined = new StringBuilder();
+        int count = 0;
+        for (String sessionKey : new LinkedHashSet<String>(sessionKeys)) {
+            if (sessionKey.indexOf(',') >= 0) {
+                continue;
+            }
+            if (count++ > 0) {
+                joined.append(',');
+            }
+            joined.append(sessionKey);
+        }
+        if (count == 0) {
+            return CompletableFuture.completedFuture(
+                    new HashMap<String, IConnector>());
+        }
+        return query(SELECT_SESSIONS_SQL,
+                new JsonArray().add(joined.toString()),
+                "get_connectors_jdbc_async",
+                "omero_web.session_count", String.valueOf(count),
+                results -> {
+            Map<String, IConnector> connectors =
+                    new HashMap<String, IConnector>();
+            for (JsonArray record : results) {
+                try {
+                    IConnector connector =
+                            getConnectorFromSessionData(record.getString(1));
+                    if (connector != null) {
+                        connectors.put(record.getString(0), connector);
                     }
+                } catch (Exception e) {
+                    log.error("Exception while unpickling connector", e);
+                }
+            }
+            return connectors;
+        });
+    }
 
-                    IConnector connector = null;
-                    List<JsonArray> results = innerResult.result().getResults();
-                    if (!results.isEmpty()){
-                        // Take the first column, first row
-                        JsonArray record = results.get(0);
-                        String sessionData = record.getString(0);
-                        connector = getConnectorFromSessionData(sessionData);
-                    }
-                    future.complete(connector);
-                });
-            } finally {
-                span.finish();
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getSessionData(java.lang.String)
+     */
+    @Override
+    public CompletionStage<SessionData> getSessionData(String sessionKey) {
+        return query(sessionKey, "get_session_data_jdbc_async")
+                .thenApply(record -> {
+            if (record == null) {
+                return null;
             }
+            // Relative to the database clock, so immune to clock skew
+            long ttl = record.getLong(1);
+            return new SessionData(
+                    JDBCPickledSessionConnector.sessionData(
+                            record.getString(0), signature),
+                    System.currentTimeMillis() + ttl);
         });
-        return future;
     }
 
     /* (non-Javadoc)
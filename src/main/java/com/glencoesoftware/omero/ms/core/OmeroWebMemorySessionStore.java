@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * An in-memory OMERO.web session store which only holds session data it
+ * has been populated with, intended as the fastest tier of an
+ * {@link OmeroWebTieredSessionStore}.  Session data is decoded once when
+ * stored, unless the connector already decoded from it is provided.
+ * Entries expire after <code>ttl</code> milliseconds, or when the session
+ * expires in the session store it was retrieved from if sooner, and can be
+ * evicted early by registering the store as a
+ * {@link SessionInvalidationListener} of another session store.  The number
+ * of stored sessions is bounded by a {@link SampledEvictor}.
+ */
+public class OmeroWebMemorySessionStore
+        implements OmeroWebSessionStore, SessionInvalidationListener {
+
+    /** Stored session data and the connector decoded from it */
+    private static final class StoredSession {
+
+        private final byte[] sessionData;
+
+        private final IConnector connector;
+
+        /** {@link System#nanoTime()} after which the session has expired */
+        private final long expires;
+
+        private StoredSession(
+                byte[] sessionData, IConnector connector, long expires) {
+            this.sessionData = sessionData;
+            this.connector = connector;
+            this.expires = expires;
+        }
+
+        private boolean isValid(long now) {
+            return now - expires < 0;
+        }
+    }
+
+    /** Entry time to live in nanoseconds */
+    private final long ttl;
+
+    /** Stored sessions by Django session key */
+    private final ConcurrentHashMap<String, StoredSession> sessions =
+            new ConcurrentHashMap<String, StoredSession>();
+
+    /** Bounds the stored sessions to their maximum number */
+    private final SampledEvictor<String, StoredSession> evictor;
+
+    /**
+     * Constructor.
+     * @param config Microservice wide configuration.  The entry time to live
+     * in milliseconds is read from <code>session-store.ttl</code> (default
+     * 300000) and the maximum number of stored sessions from
+     * <code>session-store.max_size</code> (default 10000).
+     */
+    public OmeroWebMemorySessionStore(JsonObject config) {
+        JsonObject sessionStore = config.getJsonObject(
+                "session-store", new JsonObject());
+        ttl = TimeUnit.MILLISECONDS.toNanos(
+                sessionStore.getLong("ttl", 300000L));
+        evictor = new SampledEvictor<String, StoredSession>(
+                sessions, sessionStore.getInteger("max_size", 10000),
+                session -> session.expires, session -> { });
+    }
+
+    private StoredSession get(String sessionKey) {
+        StoredSession session = sessions.get(sessionKey);
+        if (session == null) {
+            return null;
+        }
+        if (!session.isValid(System.nanoTime())) {
+            sessions.remove(sessionKey, session);
+            return null;
+        }
+        return session;
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getConnector(java.lang.String)
+     */
+    @Override
+    public CompletionStage<IConnector> getConnector(String sessionKey) {
+        StoredSession session = get(sessionKey);
+        return CompletableFuture.completedFuture(
+                session == null ? null : session.connector);
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getSessionData(java.lang.String)
+     */
+    @Override
+    public CompletionStage<SessionData> getSessionData(String sessionKey) {
+        StoredSession session = get(sessionKey);
+        if (session == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(
+                session.expires - System.nanoTime());
+        return CompletableFuture.completedFuture(new SessionData(
+                session.sessionData, System.currentTimeMillis() + remaining));
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#isWritable()
+     */
+    @Override
+    public boolean isWritable() {
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#putSessionData(java.lang.String, com.glencoesoftware.omero.ms.core.SessionData)
+     */
+    @Override
+    public CompletionStage<Void> putSessionData(
+            String sessionKey, SessionData sessionData) {
+        IConnector connector;
+        try {
+            connector = PickledSessionConnector.decode(sessionData.getData());
+        } catch (Exception e) {
+            CompletableFuture<Void> future = new CompletableFuture<Void>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        return putSessionData(sessionKey, sessionData, connector);
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#putSessionData(java.lang.String, com.glencoesoftware.omero.ms.core.SessionData, com.glencoesoftware.omero.ms.core.IConnector)
+     */
+    @Override
+    public CompletionStage<Void> putSessionData(
+            String sessionKey, SessionData sessionData,
+            IConnector connector) {
+        // Never outlive the session in the session store it came from
+        long ttl = TimeUnit.MILLISECONDS.toNanos(sessionData.ttl(
+                TimeUnit.NANOSECONDS.toMillis(this.ttl),
+                System.currentTimeMillis()));
+        if (ttl > 0) {
+            StoredSession previous = sessions.put(sessionKey,
+                    new StoredSession(sessionData.getData(), connector,
+                        System.nanoTime() + ttl));
+            if (previous == null) {
+                evictor.evict(sessionKey);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.SessionInvalidationListener#invalidate(java.lang.String)
+     */
+    @Override
+    public void invalidate(String sessionKey) {
+        sessions.remove(sessionKey);
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.SessionInvalidationListener#invalidateAll()
+     */
+    @Override
+    public void invalidateAll() {
+        sessions.clear();
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        sessions.clear();
+    }
+
+}
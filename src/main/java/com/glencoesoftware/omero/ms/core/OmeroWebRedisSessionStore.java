@@ -19,17 +19,40 @@
 package com.glencoesoftware.omero.ms.core;
 
 import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.slf4j.LoggerFactory;
 
-import brave.ScopedSpan;
-import brave.Tracing;
-import io.lettuce.core.RedisClient;
-import io.lettuce.core.RedisFuture;
-import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.api.async.RedisAsyncCommands;
-import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.api.async.RedisStringAsyncCommands;
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
+import io.lettuce.core.cluster.pubsub.StatefulRedisClusterPubSubConnection;
+import io.lettuce.core.event.Event;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.prometheus.client.Counter;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import reactor.core.Disposable;
 
 /**
  * A Redis backed OMERO.web session store. Based on a provided session key,
@@ -49,19 +72,484 @@ public class OmeroWebRedisSessionStore implements OmeroWebSessionStore {
     private static final org.slf4j.Logger log =
             LoggerFactory.getLogger(OmeroWebRedisSessionStore.class);
 
-    /** Redis client */
-    private final RedisClient client;
+    /** Hedged session lookups by outcome */
+    private static final Counter HEDGED_READS = Counter.build()
+            .name("sessionStoreHedgedReads")
+            .labelNames("outcome")
+            .help("Hedged Redis session lookups by outcome")
+            .register();
 
-    /** Redis connection */
-    private final StatefulRedisConnection<byte[], byte[]> connection;
+    /** Session invalidations received by source */
+    private static final Counter INVALIDATIONS = Counter.build()
+            .name("sessionStoreInvalidations")
+            .labelNames("source")
+            .help("Redis session invalidations received by source")
+            .register();
+
+    /** Redis client and connections */
+    private final RedisConnectionManager redis;
+
+    /**
+     * Commands of a Redis connection reading from a different node than the
+     * default connection used for hedged reads or <code>null</code> if
+     * hedging is disabled.
+     */
+    private final RedisStringAsyncCommands<byte[], byte[]> hedgeCommands;
+
+    /**
+     * Tracks the latency of session lookups, used to derive the delay after
+     * which a hedged read is fired.
+     */
+    private final LatencyTracker latencyTracker;
+
+    /** Circuit breaker guarding Redis session lookups */
+    private final CircuitBreaker circuitBreaker;
+
+    /** Listeners notified when sessions are removed from Redis */
+    private final List<SessionInvalidationListener> invalidationListeners =
+            new CopyOnWriteArrayList<SessionInvalidationListener>();
+
+    /** Decoded connectors keyed by their pickled session data */
+    private final ConnectorDecodeCache connectorCache;
+
+    /**
+     * UTF-8 encoded constant portion of the Django cache session storage
+     * engine key, everything but the session key.
+     */
+    private final byte[] keyPrefix;
+
+    /** Expiry in seconds of session data populated from other stores */
+    private final long writeBackTtl;
+
+    /**
+     * Cluster topology change subscription or <code>null</code> if there
+     * is none
+     */
+    private Disposable topologySubscription;
 
     /**
      * Default constructor.
      * @param uri Redis connection URI.
      */
     public OmeroWebRedisSessionStore(String uri) {
-        client = RedisClient.create(uri);
-        connection = client.connect(new ByteArrayCodec());
+        this(new JsonObject().put(
+                "session-store", new JsonObject().put("uri", uri)));
+    }
+
+    /**
+     * Constructor.
+     * @param config Microservice wide configuration.  The Django cache key
+     * prefix and version are read from <code>omero.web.cache_key_prefix</code>
+     * (default <code>""</code>) and <code>omero.web.cache_version</code>
+     * (default <code>1</code>), matching <code>KEY_PREFIX</code> and
+     * <code>VERSION</code> of the OMERO.web session cache.  The Redis deployment
+     * is configured via <code>session-store</code> (see
+     * {@link RedisConnectionManager}) and the optional circuit breaker via
+     * <code>session-store.circuit-breaker</code>.  Up to
+     * <code>session-store.connector_cache_size</code> (default 1024) decoded
+     * connectors are cached by pickled session data so that unpickling is
+     * skipped for session data which has been seen recently.  Session data
+     * populated from slower session stores expires after
+     * <code>session-store.write_back_ttl</code> seconds (default 3600) or
+     * when the session expires in the session store it was retrieved from,
+     * whichever is sooner.  For deployments other than standalone hedged
+     * reads are enabled with:
+     * <pre>
+     * "hedge": {
+     *     "percentile": 0.95,
+     *     "initial_delay": 10,
+     *     "min_delay": 1,
+     *     "max_delay": 100
+     * }
+     * </pre>
+     * Delays are in milliseconds.  Registered
+     * {@link SessionInvalidationListener}s are notified of session removals
+     * on every node with:
+     * <pre>
+     * "invalidation": {
+     *     "keyspace_notifications": true,
+     *     "events": ["del", "expired"],
+     *     "channel": "omero.web.sessions.invalidate"
+     * }
+     * </pre>
+     * Keyspace notifications require Redis to be configured with at least
+     * <code>notify-keyspace-events Egx</code>.  Messages published to the
+     * optional <code>channel</code> are either a Django session key or a full
+     * Django cache session storage engine key.
+     * @see CircuitBreaker#fromConfig(String, JsonObject)
+     * @see ConnectorDecodeCache
+     */
+    public OmeroWebRedisSessionStore(JsonObject config) {
+        JsonObject omeroWeb = config.getJsonObject(
+                "omero.web", new JsonObject());
+        keyPrefix = keyPrefix(
+                omeroWeb.getString("cache_key_prefix", ""),
+                omeroWeb.getInteger("cache_version", 1));
+        JsonObject sessionStore = config.getJsonObject(
+                "session-store", new JsonObject());
+        circuitBreaker = CircuitBreaker.fromConfig(
+                "session_store_redis",
+                sessionStore.getJsonObject("circuit-breaker"));
+        connectorCache = new ConnectorDecodeCache("session_store_redis",
+                sessionStore.getInteger("connector_cache_size", 1024));
+        writeBackTtl = sessionStore.getLong("write_back_ttl", 3600L);
+        redis = new RedisConnectionManager(
+                "session_store_redis", sessionStore);
+        JsonObject invalidation = sessionStore.getJsonObject("invalidation");
+        if (invalidation != null) {
+            subscribeInvalidations(invalidation);
+        }
+        JsonObject hedge = sessionStore.getJsonObject("hedge");
+        if (hedge == null) {
+            hedgeCommands = null;
+            latencyTracker = null;
+            return;
+        }
+        if (!redis.supportsReadFrom()) {
+            log.warn("Hedged reads require replicas, disabling");
+            hedgeCommands = null;
+            latencyTracker = null;
+            return;
+        }
+
+        // Hedged reads go to the upstream when normally reading from
+        // replicas and vice versa so that they hit a different node
+        ReadFrom readFrom = redis.getReadFrom();
+        boolean fromUpstream = readFrom == ReadFrom.UPSTREAM
+                || readFrom == ReadFrom.UPSTREAM_PREFERRED;
+        hedgeCommands = redis.connect(fromUpstream
+                ? ReadFrom.REPLICA_PREFERRED : ReadFrom.UPSTREAM);
+        latencyTracker = new LatencyTracker(
+                1024,
+                hedge.getDouble("percentile", 0.95),
+                TimeUnit.MILLISECONDS.toNanos(
+                        hedge.getLong("initial_delay", 10L)),
+                TimeUnit.MILLISECONDS.toNanos(hedge.getLong("min_delay", 1L)),
+                TimeUnit.MILLISECONDS.toNanos(
+                        hedge.getLong("max_delay", 100L)));
+    }
+
+    /**
+     * Subscribes to session removals via keyspace notifications and/or a
+     * dedicated channel.  As removals published while disconnected are lost
+     * listeners are asked to invalidate everything when the subscription
+     * connection is reestablished.  Keyspace notifications are local to
+     * each cluster node so in cluster mode the upstreams are subscribed to
+     * again, and everything invalidated, whenever the cluster topology
+     * changes so that nodes which are added or promoted later are covered.
+     * @param config Invalidation configuration.
+     */
+    private void subscribeInvalidations(JsonObject config) {
+        StatefulRedisPubSubConnection<byte[], byte[]> connection =
+                redis.connectPubSub();
+
+        List<byte[]> patterns = new ArrayList<byte[]>();
+        if (config.getBoolean("keyspace_notifications", true)) {
+            JsonArray events = config.getJsonArray(
+                    "events", new JsonArray().add("del").add("expired"));
+            for (int i = 0; i < events.size(); i++) {
+                patterns.add(("__keyevent@*__:" + events.getString(i))
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        byte[][] asArray = patterns.toArray(new byte[patterns.size()][]);
+        final boolean cluster =
+                connection instanceof StatefulRedisClusterPubSubConnection;
+        Runnable subscribe = () -> {
+            if (asArray.length == 0) {
+                return;
+            }
+            if (cluster) {
+                // Only the upstreams known at the time are subscribed to
+                ((StatefulRedisClusterPubSubConnection<byte[], byte[]>)
+                        connection).async().upstream().commands()
+                    .psubscribe(asArray);
+            } else {
+                connection.async().psubscribe(asArray);
+            }
+        };
+        InvalidationSubscriber subscriber = new InvalidationSubscriber(
+                keyPrefix, invalidationListeners, cluster ? subscribe : null);
+        connection.addListener(subscriber);
+        subscribe.run();
+        String channel = config.getString("channel");
+        if (channel != null) {
+            connection.async().subscribe(
+                    channel.getBytes(StandardCharsets.UTF_8));
+        }
+        if (cluster) {
+            topologySubscription = redis.getResources().eventBus().get()
+                    .subscribe(subscriber::onEvent);
+        }
+
+        redis.getClient().addListener(new RedisConnectionStateListener() {
+            @Override
+            public void onRedisConnected(
+                    RedisChannelHandler<?, ?> handler,
+                    SocketAddress socketAddress) {
+                // Cluster node connections are not exposed, treat any
+                // reconnection as a potential loss of notifications
+                if (cluster || handler == connection) {
+                    subscriber.invalidateAll("reconnect");
+                }
+            }
+
+            @Override
+            public void onRedisDisconnected(
+                    RedisChannelHandler<?, ?> handler) {
+                // Handled once reconnected
+            }
+
+            @Override
+            public void onRedisExceptionCaught(
+                    RedisChannelHandler<?, ?> handler, Throwable cause) {
+                // Handled by the connection
+            }
+        });
+        log.info("Subscribed to session invalidations");
+    }
+
+    /**
+     * Notifies listeners of session removals published by Redis.
+     */
+    static final class InvalidationSubscriber
+            extends RedisPubSubAdapter<byte[], byte[]> {
+
+        /** Encoded constant portion of the session storage engine key */
+        private final byte[] keyPrefix;
+
+        /** Listeners to notify */
+        private final List<SessionInvalidationListener> listeners;
+
+        /**
+         * Subscribes to keyspace notifications on all upstreams or
+         * <code>null</code> if not in cluster mode.
+         */
+        private final Runnable resubscribe;
+
+        /**
+         * Constructor.
+         * @param keyPrefix Encoded constant portion of the Django cache
+         * session storage engine key.
+         * @param listeners Listeners to notify.
+         * @param resubscribe Subscribes to keyspace notifications on all
+         * upstreams when the cluster topology changes or <code>null</code>
+         * if not in cluster mode.
+         */
+        InvalidationSubscriber(byte[] keyPrefix,
+                List<SessionInvalidationListener> listeners,
+                Runnable resubscribe) {
+            this.keyPrefix = keyPrefix;
+            this.listeners = listeners;
+            this.resubscribe = resubscribe;
+        }
+
+        /* (non-Javadoc)
+         * @see io.lettuce.core.pubsub.RedisPubSubAdapter#message(java.lang.Object, java.lang.Object)
+         */
+        @Override
+        public void message(byte[] channel, byte[] message) {
+            invalidate(message, "channel");
+        }
+
+        /* (non-Javadoc)
+         * @see io.lettuce.core.pubsub.RedisPubSubAdapter#message(java.lang.Object, java.lang.Object, java.lang.Object)
+         */
+        @Override
+        public void message(byte[] pattern, byte[] channel, byte[] message) {
+            // Keyevent notifications carry the key as the message
+            if (startsWith(message, keyPrefix)) {
+                invalidate(message, "keyspace");
+            }
+        }
+
+        /**
+         * Subscribes to nodes which may have joined the cluster or been
+         * promoted to upstream when its topology changes.  As removals on
+         * such nodes may have been missed listeners are asked to invalidate
+         * everything.
+         * @param event Lettuce event.
+         */
+        void onEvent(Event event) {
+            if (resubscribe == null
+                    || !(event instanceof ClusterTopologyChangedEvent)) {
+                return;
+            }
+            try {
+                resubscribe.run();
+            } catch (Exception e) {
+                log.error("Failed to subscribe to session invalidations", e);
+            }
+            invalidateAll("topology");
+        }
+
+        /**
+         * Notifies listeners of a session removal.
+         * @param key Django session key or full Django cache session storage
+         * engine key.
+         * @param source Source of the invalidation, used for metrics.
+         */
+        void invalidate(byte[] key, String source) {
+            int offset = startsWith(key, keyPrefix) ? keyPrefix.length : 0;
+            String sessionKey = new String(
+                    key, offset, key.length - offset, StandardCharsets.UTF_8);
+            log.debug("Session invalidated via {}: {}", source, sessionKey);
+            INVALIDATIONS.labels(source).inc();
+            for (SessionInvalidationListener listener : listeners) {
+                listener.invalidate(sessionKey);
+            }
+        }
+
+        /**
+         * Notifies listeners that any session may have been removed.
+         * @param source Source of the invalidation, used for metrics.
+         */
+        void invalidateAll(String source) {
+            INVALIDATIONS.labels(source).inc();
+            for (SessionInvalidationListener listener : listeners) {
+                listener.invalidateAll();
+            }
+        }
+    }
+
+    private static boolean startsWith(byte[] value, byte[] prefix) {
+        if (value.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (value[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the constant portion of the Django cache session storage
+     * engine key.
+     * @param prefix Django cache key prefix.
+     * @param version Django cache version.
+     * @return UTF-8 encoded key prefix.
+     * @see #KEY_FORMAT
+     */
+    static byte[] keyPrefix(String prefix, int version) {
+        return String.format(KEY_FORMAT, prefix, version, "")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds the Django cache session storage engine key for a session key
+     * without format parsing or charset encoder overhead.  Django session
+     * keys are ASCII so each character is copied directly, anything else
+     * falls back to UTF-8 encoding.
+     * @param keyPrefix Encoded constant portion of the key.
+     * @param sessionKey Django session key.
+     * @return UTF-8 encoded key.
+     */
+    static byte[] sessionKey(byte[] keyPrefix, String sessionKey) {
+        int length = sessionKey.length();
+        // A new array is required for every request as the codec may encode
+        // the key on the I/O thread after the command has been dispatched
+        byte[] key = new byte[keyPrefix.length + length];
+        System.arraycopy(keyPrefix, 0, key, 0, keyPrefix.length);
+        for (int i = 0; i < length; i++) {
+            char c = sessionKey.charAt(i);
+            if (c >= 0x80) {
+                byte[] encoded = sessionKey.getBytes(StandardCharsets.UTF_8);
+                key = new byte[keyPrefix.length + encoded.length];
+                System.arraycopy(keyPrefix, 0, key, 0, keyPrefix.length);
+                System.arraycopy(
+                        encoded, 0, key, keyPrefix.length, encoded.length);
+                return key;
+            }
+            key[keyPrefix.length + i] = (byte) c;
+        }
+        return key;
+    }
+
+    /**
+     * Retrieves a key, firing a second read to another node if hedging is
+     * enabled and the first has not completed within the tracked latency
+     * percentile.  Whichever read completes successfully first wins.
+     * @param key Key to retrieve.
+     * @return See above.
+     */
+    private CompletionStage<byte[]> get(byte[] key) {
+        if (hedgeCommands == null) {
+            return redis.async().get(key);
+        }
+        return hedge(
+                () -> redis.async().get(key),
+                () -> hedgeCommands.get(key),
+                redis.getResources().eventExecutorGroup(),
+                latencyTracker);
+    }
+
+    /**
+     * Runs a read, firing a second read if the first has not completed
+     * within the latency tracked by <code>latencyTracker</code>.  The first
+     * read to complete successfully wins and the other is cancelled; the
+     * result only fails once every read fired has failed.  Only the
+     * latency of primary reads is recorded so that the tracked percentile
+     * is not skewed by hedges.
+     * @param primary Issues the primary read.
+     * @param secondary Issues the hedged read.
+     * @param scheduler Scheduler the hedged read is fired from.
+     * @param latencyTracker Tracks the delay after which to hedge.
+     * @return See above.
+     */
+    static <T> CompletableFuture<T> hedge(
+            Supplier<? extends CompletionStage<T>> primary,
+            Supplier<? extends CompletionStage<T>> secondary,
+            ScheduledExecutorService scheduler,
+            LatencyTracker latencyTracker) {
+        final long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<T>();
+        // Number of reads which have not yet failed
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<T> first = primary.get().toCompletableFuture();
+        first.whenComplete((v, t) -> {
+            if (t == null) {
+                latencyTracker.record(System.nanoTime() - start);
+                result.complete(v);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(t);
+            }
+        });
+        AtomicReference<CompletableFuture<T>> second =
+                new AtomicReference<CompletableFuture<T>>();
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (result.isDone() || outstanding.getAndIncrement() == 0) {
+                return;
+            }
+            HEDGED_READS.labels("fired").inc();
+            CompletableFuture<T> hedged = secondary.get().toCompletableFuture();
+            second.set(hedged);
+            hedged.whenComplete((v, t) -> {
+                if (t == null) {
+                    if (result.complete(v)) {
+                        HEDGED_READS.labels("won").inc();
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(t);
+                }
+            });
+            if (result.isDone()) {
+                // The primary completed while the hedge was being fired
+                hedged.cancel(false);
+            }
+        }, latencyTracker.get(), TimeUnit.NANOSECONDS);
+        result.whenComplete((v, t) -> {
+            timer.cancel(false);
+            // Cancelling a completed read is a no-op, so only the loser is
+            // affected; Lettuce discards the reply to a cancelled command
+            first.cancel(false);
+            CompletableFuture<T> hedged = second.get();
+            if (hedged != null) {
+                hedged.cancel(false);
+            }
+        });
+        return result;
     }
 
     /* (non-Javadoc)
@@ -69,39 +557,173 @@ public class OmeroWebRedisSessionStore implements OmeroWebSessionStore {
      */
     @Override
     public CompletionStage<IConnector> getConnector(String sessionKey) {
-        RedisAsyncCommands<byte[], byte[]> commands = connection.async();
-        String key = String.format(
-                KEY_FORMAT,
-                "",  // OMERO_WEB_CACHE_KEY_PREFIX
-                1,  // OMERO_WEB_CACHE_VERSION
-                sessionKey);
-        log.debug("Retrieving OMERO.web session with key: {}", key);
-
-        ScopedSpan span = Tracing.currentTracer().startScopedSpan("get_connector_redis_async");
+        log.debug("Retrieving OMERO.web session with key: {}", sessionKey);
+
+        if (!circuitBreaker.allowRequest()) {
+            return rejected();
+        }
+
+        TraceSpan span = Traces.startScopedSpan("get_connector_redis_async");
         span.tag("omero_web.session_key", sessionKey);
         // Binary retrieval, get(String) includes a UTF-8 step
-        RedisFuture<byte[]> future = commands.get(key.getBytes());
-        return future.<IConnector>thenApply(value -> {
+        CompletionStage<IConnector> future =
+                guard(() -> get(sessionKey(keyPrefix, sessionKey)))
+                    .thenApply(value -> {
             try {
                 if (value != null) {
-                    return new PickledSessionConnector(value);
+                    return connectorCache.get(
+                            value, PickledSessionConnector::decode);
                 }
             } catch (Exception e) {
                 log.error("Exception while unpickling connector", e);
-            } finally {
-                span.finish();
             }
             return null;
-        }).exceptionally(t -> {
-            log.error(t.getMessage(), t);
-            return null;
         });
+        // Failures, including circuit breaker rejections, are propagated as
+        // for getConnectors() so that callers can tell them from misses
+        future.whenComplete((v, t) -> span.finish());
+        return future;
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getConnectors(java.util.Collection)
+     */
+    @Override
+    public CompletionStage<Map<String, IConnector>> getConnectors(
+            Collection<String> sessionKeys) {
+        List<String> unique =
+                new ArrayList<String>(new LinkedHashSet<String>(sessionKeys));
+        if (unique.isEmpty()) {
+            return CompletableFuture.completedFuture(
+                    new HashMap<String, IConnector>());
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return rejected();
+        }
+        byte[][] keys = new byte[unique.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = sessionKey(keyPrefix, unique.get(i));
+        }
+        TraceSpan span = Traces.startScopedSpan("get_connectors_redis_async");
+        span.tag("omero_web.session_count", keys.length);
+        // Values are returned in key order; in cluster mode the command is
+        // split by slot and reassembled by the client
+        CompletionStage<Map<String, IConnector>> future =
+                guard(() -> redis.async().mget(keys)).thenApply(values -> {
+            Map<String, IConnector> connectors =
+                    new HashMap<String, IConnector>();
+            for (int i = 0; i < values.size(); i++) {
+                KeyValue<byte[], byte[]> value = values.get(i);
+                if (!value.hasValue()) {
+                    continue;
+                }
+                try {
+                    connectors.put(unique.get(i), connectorCache.get(
+                            value.getValue(),
+                            PickledSessionConnector::decode));
+                } catch (Exception e) {
+                    log.error("Exception while unpickling connector", e);
+                }
+            }
+            return connectors;
+        });
+        future.whenComplete((v, t) -> span.finish());
+        return future;
+    }
+
+    /**
+     * Issues a Redis command and reports its outcome to the circuit
+     * breaker.  Commands which throw rather than complete exceptionally are
+     * reported as failures too so that half open probes are never leaked.
+     * @param command Issues the command.
+     * @return The command outcome.
+     */
+    private <T> CompletionStage<T> guard(
+            Supplier<? extends CompletionStage<T>> command) {
+        CompletionStage<T> stage;
+        try {
+            stage = command.get();
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            CompletableFuture<T> failed = new CompletableFuture<T>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        stage.whenComplete((v, t) -> {
+            if (t != null) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        });
+        return stage;
+    }
+
+    private <T> CompletionStage<T> rejected() {
+        CompletableFuture<T> rejected = new CompletableFuture<T>();
+        rejected.completeExceptionally(
+                new CircuitBreakerOpenException(circuitBreaker.getName()));
+        return rejected;
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getSessionData(java.lang.String)
+     */
+    @Override
+    public CompletionStage<SessionData> getSessionData(String sessionKey) {
+        if (!circuitBreaker.allowRequest()) {
+            return rejected();
+        }
+        // Expiry is left to faster tiers, which are notified of removals
+        return guard(() -> get(sessionKey(keyPrefix, sessionKey)))
+            .thenApply(value -> value == null
+                    ? null : new SessionData(value, null));
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#isWritable()
+     */
+    @Override
+    public boolean isWritable() {
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#putSessionData(java.lang.String, com.glencoesoftware.omero.ms.core.SessionData)
+     */
+    @Override
+    public CompletionStage<Void> putSessionData(
+            String sessionKey, SessionData sessionData) {
+        // Never outlive the session in the session store it came from
+        long ttl = sessionData.ttl(
+                TimeUnit.SECONDS.toMillis(writeBackTtl),
+                System.currentTimeMillis());
+        if (ttl <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return rejected();
+        }
+        return guard(() -> redis.async().psetex(
+                sessionKey(keyPrefix, sessionKey), ttl, sessionData.getData()))
+            .thenApply(reply -> null);
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#addInvalidationListener(com.glencoesoftware.omero.ms.core.SessionInvalidationListener)
+     */
+    @Override
+    public void addInvalidationListener(
+            SessionInvalidationListener listener) {
+        invalidationListeners.add(listener);
     }
 
     @Override
     public void close() throws IOException {
-        connection.close();
-        client.shutdown();
+        if (topologySubscription != null) {
+            topologySubscription.dispose();
+        }
+        redis.close();
     }
 
 }
@@ -18,6 +18,8 @@
 
 package com.glencoesoftware.omero.ms.core;
 
+import java.util.concurrent.CompletionException;
+
 import org.slf4j.LoggerFactory;
 
 import io.vertx.core.Handler;
@@ -41,16 +43,56 @@ public class OmeroWebSessionRequestHandler implements Handler<RoutingContext>{
     /** Microservice wide configuration. */
     private final JsonObject config;
 
+    /** Connectors by Django session key, possibly disabled. */
+    private final SessionCache sessionCache;
+
+    /** Session token issuer, <code>null</code> if disabled. */
+    private final SessionToken sessionToken;
+
     /**
      * Default constructor.
-     * @param config Microservice wide configuration.
+     * @param config Microservice wide configuration.  Connectors are cached
+     * if <code>session-cache</code> is configured and session tokens are
+     * issued if <code>session-token</code> is configured.
      * @param sessionStore OMERO.web session store implementation.
+     * @see SessionCache#fromConfig(JsonObject)
+     * @see SessionToken#fromConfig(JsonObject, String)
      */
     public OmeroWebSessionRequestHandler(
             JsonObject config, OmeroWebSessionStore sessionStore) {
+        this(config, sessionStore,
+             SessionCache.fromConfig(config.getJsonObject("session-cache")));
+    }
+
+    /**
+     * Constructor.
+     * @param config Microservice wide configuration.
+     * @param sessionStore OMERO.web session store implementation.
+     * @param sessionCache Connector cache, may be shared between handlers.
+     * If enabled it is registered with the session store to be notified of
+     * session removals.
+     */
+    public OmeroWebSessionRequestHandler(
+            JsonObject config, OmeroWebSessionStore sessionStore,
+            SessionCache sessionCache) {
         this.config = config;
 
         this.sessionStore = sessionStore;
+        this.sessionCache = sessionCache;
+        if (sessionCache.isEnabled()) {
+            sessionStore.addInvalidationListener(sessionCache);
+        }
+        this.sessionToken = SessionToken.fromConfig(
+                config.getJsonObject("session-token"),
+                config.getJsonObject("omero.web", new JsonObject())
+                    .getString("secret_key"));
+    }
+
+    /**
+     * @return Connector cache in use, possibly disabled.
+     */
+    public SessionCache getSessionCache() {
+        return sessionCache;
     }
 
 
@@ -65,6 +107,48 @@ public class OmeroWebSessionRequestHandler implements Handler<RoutingContext>{
         event.next();
     }
 
+    /**
+     * Retrieves a session token from the request, preferring the header
+     * over the cookie.
+     * @param event Current routing context.
+     * @return See above or <code>null</code> if there is none.
+     */
+    private String getSessionToken(RoutingContext event) {
+        String token = event.request().headers().get(
+                sessionToken.getHeaderName());
+        if (token != null) {
+            return token;
+        }
+        Cookie cookie =
+                event.request().getCookie(sessionToken.getCookieName());
+        return cookie == null ? null : cookie.getValue();
+    }
+
+    /**
+     * Issues a session token for a connector resolved from the session
+     * cache or store so that subsequent requests can skip the lookup.  The
+     * token is only issued as an <code>HttpOnly</code> cookie, never in a
+     * response header, so that it is not readable by scripts.
+     * @param djangoSessionKey Django session key the connector was resolved
+     * from.
+     * @param connector Resolved connector, may be <code>null</code>.
+     * @param event Current routing context.
+     */
+    private void issueSessionToken(String djangoSessionKey,
+            IConnector connector, RoutingContext event) {
+        if (sessionToken == null || connector == null
+                || connector.getOmeroSessionKey() == null) {
+            return;
+        }
+        String token = sessionToken.issue(djangoSessionKey, connector);
+        event.response().addCookie(
+                Cookie.cookie(sessionToken.getCookieName(), token)
+                    .setPath("/")
+                    .setHttpOnly(true)
+                    .setSecure(event.request().isSSL())
+                    .setMaxAge(sessionToken.getTtl() / 1000));
+    }
+
     /**
      * Handler implementation whose responsibility is to make the OMERO session
      * key into the routing context via the <code>omero.session_key</code>
@@ -73,12 +157,15 @@ public class OmeroWebSessionRequestHandler implements Handler<RoutingContext>{
      */
     @Override
     public void handle(RoutingContext event) {
+        FlightRecorderEvents.SessionLookup lookup =
+                FlightRecorderEvents.sessionLookup();
         // First try to get the OMERO session key from the
         // `X-OMERO-Session-Key` request header.
         String sessionKey =
                 event.request().headers().get("X-OMERO-Session-Key");
         if (sessionKey != null) {
             log.debug("OMERO session key from header: {}", sessionKey);
+            FlightRecorderEvents.commit(lookup, "header", true);
             event.put("omero.session_key", sessionKey);
             event.next();
             return;
@@ -91,6 +178,7 @@ public class OmeroWebSessionRequestHandler implements Handler<RoutingContext>{
                 "OMERO session key from 'bsession' URL parameter: {}",
                 sessionKey
             );
+            FlightRecorderEvents.commit(lookup, "bsession", true);
             event.put("omero.session_key", sessionKey);
             event.next();
             return;
@@ -101,19 +189,49 @@ public class OmeroWebSessionRequestHandler implements Handler<RoutingContext>{
         JsonObject omeroWeb = config.getJsonObject(
                 "omero.web", new JsonObject());
         String name = omeroWeb.getString("session_cookie_name", "sessionid");
-        Cookie cookie = event.getCookie(name);
+        Cookie cookie = event.request().getCookie(name);
         if (cookie == null) {
+            FlightRecorderEvents.commit(lookup, "none", false);
             event.response().setStatusCode(403);
             event.response().end();
             return;
         }
         final String djangoSessionKey = cookie.getValue();
         log.debug("OMERO.web session key: {}", djangoSessionKey);
+        if (sessionToken != null) {
+            // A valid session token requires no I/O at all
+            IConnector verified = sessionToken.verify(
+                    getSessionToken(event), djangoSessionKey);
+            if (verified != null) {
+                FlightRecorderEvents.commit(lookup, "token", true);
+                handleConnector(verified, event);
+                return;
+            }
+        }
+        IConnector cached = sessionCache.get(djangoSessionKey);
+        if (cached != null) {
+            FlightRecorderEvents.commit(lookup, "cache", true);
+            issueSessionToken(djangoSessionKey, cached, event);
+            handleConnector(cached, event);
+            return;
+        }
+        // Captured before the lookup so that a session invalidated while it
+        // is in flight is not cached
+        long version = sessionCache.version(djangoSessionKey);
         sessionStore.getConnector(djangoSessionKey)
             .whenComplete((connector, throwable) -> {
-            if (throwable != null) {
-                log.error("Exception retrieving connector", throwable);
+            Throwable cause = throwable instanceof CompletionException
+                    ? throwable.getCause() : throwable;
+            if (cause instanceof CircuitBreakerOpenException) {
+                // Transitions are logged by the circuit breaker and
+                // rejections counted, do not log every one
+                log.debug(cause.getMessage());
+            } else if (cause != null) {
+                log.error("Exception retrieving connector", cause);
             }
+            FlightRecorderEvents.commit(lookup, "store", connector != null);
+            sessionCache.put(djangoSessionKey, connector, version);
+            issueSessionToken(djangoSessionKey, connector, event);
             handleConnector(connector, event);
         });
     }
@@ -19,7 +19,11 @@
 package com.glencoesoftware.omero.ms.core;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An OMERO.web session store.
@@ -37,4 +41,104 @@ public interface OmeroWebSessionStore extends Closeable {
      */
     CompletionStage<IConnector> getConnector(String sessionKey);
 
+    /**
+     * Retrieve the current <code>omeroweb.connector.Connector</code> of
+     * several OMERO.web sessions.  Session stores which support it do so in
+     * a single round trip; by default each session is retrieved
+     * individually.
+     * @param sessionKeys Session keys to retrieve connectors for.
+     * @return A new {@link CompletionStage} that is completed with the
+     * connectors of the sessions which exist, keyed by session key.
+     */
+    default CompletionStage<Map<String, IConnector>> getConnectors(
+            Collection<String> sessionKeys) {
+        Map<String, IConnector> connectors =
+                new ConcurrentHashMap<String, IConnector>();
+        CompletableFuture<?>[] futures =
+                new CompletableFuture<?>[sessionKeys.size()];
+        int i = 0;
+        for (String sessionKey : sessionKeys) {
+            futures[i++] = getConnector(sessionKey).thenAccept(connector -> {
+                if (connector != null) {
+                    connectors.put(sessionKey, connector);
+                }
+            }).toCompletableFuture();
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> connectors);
+    }
+
+    /**
+     * Retrieve the OMERO.web session's raw pickled session data, the Django
+     * session dictionary as stored by the Django cache session storage
+     * engine, and when the session expires if known.  Used to populate
+     * faster session stores from slower ones.
+     * @param sessionKey Session key to retrieve session data for.
+     * @return A new {@link CompletionStage} that is completed with the
+     * session data or <code>null</code> if the session does not exist or
+     * has expired.  Completed exceptionally with
+     * {@link UnsupportedOperationException} by session stores which cannot
+     * provide session data.
+     */
+    default CompletionStage<SessionData> getSessionData(String sessionKey) {
+        CompletableFuture<SessionData> future =
+                new CompletableFuture<SessionData>();
+        future.completeExceptionally(new UnsupportedOperationException(
+                "Session data retrieval not supported"));
+        return future;
+    }
+
+    /**
+     * @return Whether or not this session store can be populated via
+     * {@link #putSessionData(String, SessionData)}.
+     */
+    default boolean isWritable() {
+        return false;
+    }
+
+    /**
+     * Populate the session store with session data retrieved from another
+     * session store.  Session data must not be stored beyond when the
+     * session expires.
+     * @param sessionKey Session key to store session data for.
+     * @param sessionData Session data.
+     * @return A new {@link CompletionStage} that is completed once the
+     * session data has been stored.  Completed exceptionally with
+     * {@link UnsupportedOperationException} by session stores which are not
+     * {@link #isWritable() writable}.
+     */
+    default CompletionStage<Void> putSessionData(
+            String sessionKey, SessionData sessionData) {
+        CompletableFuture<Void> future = new CompletableFuture<Void>();
+        future.completeExceptionally(new UnsupportedOperationException(
+                "Session data storage not supported"));
+        return future;
+    }
+
+    /**
+     * Populate the session store with session data retrieved from another
+     * session store along with the connector already decoded from it.
+     * Session stores which hold decoded connectors use it rather than
+     * decoding the session data again; by default it is ignored.
+     * @param sessionKey Session key to store session data for.
+     * @param sessionData Session data.
+     * @param connector Connector decoded from <code>sessionData</code>.
+     * @return See {@link #putSessionData(String, SessionData)}.
+     */
+    default CompletionStage<Void> putSessionData(
+            String sessionKey, SessionData sessionData,
+            IConnector connector) {
+        return putSessionData(sessionKey, sessionData);
+    }
+
+    /**
+     * Registers a listener to be notified when sessions are removed from
+     * the session store.  Session stores which are unable to observe
+     * removals ignore the listener.
+     * @param listener Listener to register.
+     */
+    default void addInvalidationListener(
+            SessionInvalidationListener listener) {
+        // Removals are not observable
+    }
+
 }
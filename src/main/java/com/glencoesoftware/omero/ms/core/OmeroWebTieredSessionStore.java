@@ -0,0 +1,377 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import org.slf4j.LoggerFactory;
+
+import io.prometheus.client.Summary;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * An OMERO.web session store which consults an ordered chain of session
+ * stores, fastest first, for example in-memory, then Redis, then the
+ * <code>django_session</code> table in PostgreSQL.  A session found in a
+ * slower tier is written back to every faster {@link
+ * OmeroWebSessionStore#isWritable() writable} tier so that the slower tier
+ * is only consulted once per session.  A tier which fails is skipped.  The
+ * latency of each tier is recorded by outcome.
+ */
+public class OmeroWebTieredSessionStore implements OmeroWebSessionStore {
+
+    private static final org.slf4j.Logger log =
+            LoggerFactory.getLogger(OmeroWebTieredSessionStore.class);
+
+    /** Latency of each tier by outcome */
+    private static final Summary TIER_DURATION = Summary.build()
+            .name("sessionStoreTierDuration")
+            .labelNames("tier", "result")
+            .help("Session store tier lookup duration in milliseconds")
+            .register();
+
+    /** Session store tier */
+    private static final class Tier {
+
+        private final String name;
+
+        private final OmeroWebSessionStore store;
+
+        private Tier(String name, OmeroWebSessionStore store) {
+            this.name = name;
+            this.store = store;
+        }
+    }
+
+    /** Tiers, fastest first */
+    private final List<Tier> tiers = new ArrayList<Tier>();
+
+    /** Connectors decoded from session data retrieved from slower tiers */
+    private final ConnectorDecodeCache connectorCache;
+
+    /**
+     * Constructor.
+     * @param config Microservice wide configuration.  Tiers are read, fastest
+     * first, from <code>session-store.tiers</code>, each of which is
+     * configured as the <code>session-store</code> of the corresponding
+     * session store with an additional <code>type</code> of
+     * <code>memory</code>, <code>redis</code> or <code>jdbc</code>:
+     * <pre>
+     * "session-store": {
+     *     "tiers": [
+     *         {"type": "memory", "ttl": 300000},
+     *         {"type": "redis", "uri": "redis://localhost:6379/1"},
+     *         {"type": "jdbc", "uri": "jdbc:postgresql://..."}
+     *     ]
+     * }
+     * </pre>
+     * @param vertx the vertx instance for this verticle
+     */
+    public OmeroWebTieredSessionStore(JsonObject config, Vertx vertx) {
+        JsonObject sessionStore = config.getJsonObject(
+                "session-store", new JsonObject());
+        JsonArray tierConfigs =
+                sessionStore.getJsonArray("tiers", new JsonArray());
+        for (int i = 0; i < tierConfigs.size(); i++) {
+            JsonObject tierConfig = tierConfigs.getJsonObject(i);
+            String type = tierConfig.getString("type");
+            JsonObject storeConfig =
+                    config.copy().put("session-store", tierConfig);
+            OmeroWebSessionStore store;
+            switch (type) {
+                case "memory":
+                    store = new OmeroWebMemorySessionStore(storeConfig);
+                    break;
+                case "redis":
+                    store = new OmeroWebRedisSessionStore(storeConfig);
+                    break;
+                case "jdbc":
+                    store = new OmeroWebJDBCSessionStore(storeConfig, vertx);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unknown session store type: " + type);
+            }
+            tiers.add(new Tier(type, store));
+        }
+        connectorCache = new ConnectorDecodeCache("session_store_tiered",
+                sessionStore.getInteger("connector_cache_size", 1024));
+        registerInvalidationListeners();
+    }
+
+    /**
+     * Constructor.
+     * @param names Names of the tiers, used for metrics and logging.
+     * @param stores Session stores, fastest first.
+     */
+    public OmeroWebTieredSessionStore(
+            List<String> names, List<OmeroWebSessionStore> stores) {
+        if (names.size() != stores.size()) {
+            throw new IllegalArgumentException(
+                    "Tier names and session stores do not match");
+        }
+        for (int i = 0; i < stores.size(); i++) {
+            tiers.add(new Tier(names.get(i), stores.get(i)));
+        }
+        connectorCache = new ConnectorDecodeCache(
+                "session_store_tiered", 1024);
+        registerInvalidationListeners();
+    }
+
+    /**
+     * Evicts sessions from tiers which can be invalidated, such as
+     * {@link OmeroWebMemorySessionStore}, when other tiers observe their
+     * removal.
+     */
+    private void registerInvalidationListeners() {
+        for (Tier tier : tiers) {
+            if (!(tier.store instanceof SessionInvalidationListener)) {
+                continue;
+            }
+            for (Tier other : tiers) {
+                if (other != tier) {
+                    other.store.addInvalidationListener(
+                            (SessionInvalidationListener) tier.store);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Names of the tiers, fastest first.
+     */
+    public List<String> getTierNames() {
+        List<String> names = new ArrayList<String>();
+        for (Tier tier : tiers) {
+            names.add(tier.name);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @param index Index of a tier.
+     * @return Whether or not a tier faster than <code>index</code> can be
+     * written back to.
+     */
+    private boolean hasWritableTierBefore(int index) {
+        for (int i = 0; i < index; i++) {
+            if (tiers.get(i).store.isWritable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getConnector(java.lang.String)
+     */
+    @Override
+    public CompletionStage<IConnector> getConnector(String sessionKey) {
+        return getConnector(sessionKey, 0);
+    }
+
+    /**
+     * Retrieves a connector from a tier, falling through to slower tiers on
+     * a miss or failure.
+     * @param sessionKey Django session key.
+     * @param index Index of the tier to consult.
+     * @return See above.
+     */
+    private CompletionStage<IConnector> getConnector(
+            String sessionKey, int index) {
+        if (index >= tiers.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Tier tier = tiers.get(index);
+        long start = System.nanoTime();
+        CompletionStage<IConnector> stage;
+        if (hasWritableTierBefore(index)) {
+            // Session data is required to populate faster tiers
+            stage = tier.store.getSessionData(sessionKey)
+                    .handle((sessionData, t) -> {
+                if (unwrap(t) instanceof UnsupportedOperationException) {
+                    return tier.store.getConnector(sessionKey);
+                }
+                CompletableFuture<IConnector> future =
+                        new CompletableFuture<IConnector>();
+                if (t != null) {
+                    future.completeExceptionally(t);
+                } else if (sessionData == null) {
+                    future.complete(null);
+                } else {
+                    try {
+                        IConnector connector = connectorCache.get(
+                                sessionData.getData(),
+                                PickledSessionConnector::decode);
+                        future.complete(connector);
+                        writeBack(sessionKey, sessionData, connector, index);
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+                return future;
+            }).thenCompose(future -> future);
+        } else {
+            stage = tier.store.getConnector(sessionKey);
+        }
+        return stage.handle((connector, t) -> {
+            String result = t != null ? "error"
+                    : connector != null ? "hit" : "miss";
+            TIER_DURATION.labels(tier.name, result).observe(
+                    (System.nanoTime() - start) / 1000000.0);
+            if (t != null) {
+                log.warn("Session store tier {} failed, skipping",
+                        tier.name, unwrap(t));
+            }
+            return connector;
+        }).thenCompose(connector -> connector != null
+                ? CompletableFuture.completedFuture(connector)
+                : getConnector(sessionKey, index + 1));
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException ? t.getCause() : t;
+    }
+
+    /**
+     * Retrieves connectors tier by tier, only consulting slower tiers for
+     * sessions not found in faster ones.  Unlike single session retrieval
+     * faster tiers are not populated.
+     * @see OmeroWebSessionStore#getConnectors(Collection)
+     */
+    @Override
+    public CompletionStage<Map<String, IConnector>> getConnectors(
+            Collection<String> sessionKeys) {
+        return getConnectors(new LinkedHashSet<String>(sessionKeys),
+                new HashMap<String, IConnector>(), 0);
+    }
+
+    private CompletionStage<Map<String, IConnector>> getConnectors(
+            Set<String> remaining, Map<String, IConnector> found,
+            int index) {
+        if (remaining.isEmpty() || index >= tiers.size()) {
+            return CompletableFuture.completedFuture(found);
+        }
+        Tier tier = tiers.get(index);
+        long start = System.nanoTime();
+        return tier.store.getConnectors(remaining)
+                .handle((connectors, t) -> {
+            TIER_DURATION.labels(tier.name, t != null ? "error" : "batch")
+                .observe((System.nanoTime() - start) / 1000000.0);
+            if (t != null) {
+                log.warn("Session store tier {} failed, skipping",
+                        tier.name, unwrap(t));
+            } else {
+                found.putAll(connectors);
+                remaining.removeAll(connectors.keySet());
+            }
+            return found;
+        }).thenCompose(v -> getConnectors(remaining, found, index + 1));
+    }
+
+    /**
+     * Populates every writable tier faster than the one session data was
+     * retrieved from, for no longer than the session lives in that tier.
+     * Failures are logged and otherwise ignored.
+     * @param sessionKey Django session key.
+     * @param sessionData Session data.
+     * @param connector Connector decoded from the session data.
+     * @param index Index of the tier the session data was retrieved from.
+     */
+    private void writeBack(
+            String sessionKey, SessionData sessionData, IConnector connector,
+            int index) {
+        for (int i = 0; i < index; i++) {
+            Tier tier = tiers.get(i);
+            if (!tier.store.isWritable()) {
+                continue;
+            }
+            tier.store.putSessionData(sessionKey, sessionData, connector)
+                .whenComplete((v, t) -> {
+                    if (t != null) {
+                        log.warn("Failed to populate session store tier {}",
+                                tier.name, t);
+                    }
+                });
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#getSessionData(java.lang.String)
+     */
+    @Override
+    public CompletionStage<SessionData> getSessionData(String sessionKey) {
+        return getSessionData(sessionKey, 0);
+    }
+
+    private CompletionStage<SessionData> getSessionData(
+            String sessionKey, int index) {
+        if (index >= tiers.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return tiers.get(index).store.getSessionData(sessionKey)
+            .handle((sessionData, t) -> t != null ? null : sessionData)
+            .thenCompose(sessionData -> sessionData != null
+                    ? CompletableFuture.completedFuture(sessionData)
+                    : getSessionData(sessionKey, index + 1));
+    }
+
+    /* (non-Javadoc)
+     * @see com.glencoesoftware.omero.ms.core.OmeroWebSessionStore#addInvalidationListener(com.glencoesoftware.omero.ms.core.SessionInvalidationListener)
+     */
+    @Override
+    public void addInvalidationListener(
+            SessionInvalidationListener listener) {
+        for (Tier tier : tiers) {
+            tier.store.addInvalidationListener(listener);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Tier tier : tiers) {
+            try {
+                tier.store.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Growable, array backed pickle memo of strings indexed by memo offset.
+ * Offsets beyond the bounded array are held in a map so that a pickle with
+ * sparse, large offsets cannot force a large allocation.  Instances are not
+ * thread safe and are intended to be reset and reused across decodes on the
+ * same thread.
+ */
+public class PickleMemo {
+
+    /** Initial capacity of the memo */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Capacity above which the backing array is released on
+     * {@link #reset()} rather than retained for reuse.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+
+    /** Maximum capacity of the backing array */
+    static final int MAX_ARRAY_CAPACITY = 1 << 16;
+
+    /** Memoized values indexed by memo offset */
+    private String[] values = new String[INITIAL_CAPACITY];
+
+    /** One past the highest memo offset written to the backing array
+     * since the last reset */
+    private int size;
+
+    /**
+     * Memoized values whose offset exceeds the backing array's maximum
+     * capacity or <code>null</code> if there are none
+     */
+    private Map<Integer, String> overflow;
+
+    /**
+     * Memoizes a value.
+     * @param index Memo offset.
+     * @param value Value to memoize.
+     */
+    public void put(int index, String value) {
+        if (index < 0) {
+            throw new IllegalArgumentException(
+                    "Negative memo offset: " + index);
+        }
+        if (index >= MAX_ARRAY_CAPACITY) {
+            if (overflow == null) {
+                overflow = new HashMap<Integer, String>();
+            }
+            overflow.put(index, value);
+            return;
+        }
+        if (index >= values.length) {
+            // Bounded by MAX_ARRAY_CAPACITY so cannot overflow
+            values = Arrays.copyOf(
+                    values, Integer.highestOneBit(index) << 1);
+        }
+        values[index] = value;
+        if (index >= size) {
+            size = index + 1;
+        }
+    }
+
+    /**
+     * Retrieves a memoized value.
+     * @param index Memo offset.
+     * @return The memoized value or <code>null</code> if there is none.
+     */
+    public String get(int index) {
+        if (index >= MAX_ARRAY_CAPACITY) {
+            return overflow == null ? null : overflow.get(index);
+        }
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        return values[index];
+    }
+
+    /**
+     * Clears all memoized values so that the memo can be reused.
+     */
+    public void reset() {
+        if (values.length > MAX_RETAINED_CAPACITY) {
+            values = new String[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(values, 0, size, null);
+        }
+        size = 0;
+        overflow = null;
+    }
+
+}
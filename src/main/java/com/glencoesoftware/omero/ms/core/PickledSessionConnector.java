@@ -18,16 +18,13 @@
 
 package com.glencoesoftware.omero.ms.core;
 
-import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.slf4j.LoggerFactory;
 
 import com.glencoesoftware.omero.ms.core.PythonPickle.Op;
@@ -39,6 +36,11 @@ public class PickledSessionConnector implements IConnector {
     private static final org.slf4j.Logger log =
             LoggerFactory.getLogger(PickledSessionConnector.class);
 
+    /**
+     * Opcodes whose argument is a string.
+     * @deprecated Use {@link PythonPickle.Opcode#isString()}.
+     */
+    @Deprecated
     public static final List<PythonPickle.Opcode> STRING_TYPE_OPCODES =
         Arrays.asList(new PythonPickle.Opcode[] {
                 PythonPickle.Opcode.SHORT_BINSTRING,
@@ -49,16 +51,16 @@ public class PickledSessionConnector implements IConnector {
         });
 
     /**
-     * All the memoized strings we have encountered before we hit the
-     * connector
+     * Per thread memo, reset and reused across decodes on the same thread.
      */
-    private Map<Integer, String> memo = new HashMap<Integer, String>();
+    private static final ThreadLocal<PickleMemo> MEMO =
+            ThreadLocal.withInitial(PickleMemo::new);
 
     /**
-     * Current memo offset, incremented each time a memo Opcode is encountered
-     * before we hit the connector
+     * All the memoized strings we have encountered before we hit the
+     * connector; only set while decoding
      */
-    private int memoOffset = 0;
+    private PickleMemo memo;
 
     private Long serverId;
 
@@ -70,8 +72,6 @@ public class PickledSessionConnector implements IConnector {
 
     private Long userId;
 
-    private String b64Session;
-
     protected PickledSessionConnector() {
     }
 
@@ -85,24 +85,58 @@ public class PickledSessionConnector implements IConnector {
         }
     }
 
+    /**
+     * Decodes pickled session data into its compact representation, which
+     * retains none of the parse state.
+     * @param serialized Pickled session data.
+     * @return See above.
+     * @see CompactConnector
+     */
+    public static CompactConnector decode(byte[] serialized) {
+        return CompactConnector.copyOf(
+                new PickledSessionConnector(serialized));
+    }
+
     protected void init(byte[] sessionData) {
-        b64Session = Base64.getEncoder().encodeToString(sessionData);
+        FlightRecorderEvents.PickleDecode event =
+                FlightRecorderEvents.pickleDecode();
+        int ops = 0;
+        memo = MEMO.get();
+        memo.reset();
+        try {
+            ops = parse(sessionData);
+        } finally {
+            memo.reset();
+            memo = null;
+            FlightRecorderEvents.commit(event, sessionData.length, ops);
+        }
+    }
+
+    /**
+     * @param sessionData Pickled session data.
+     * @return Number of pickle ops parsed, all of which are decoded up
+     * front whether or not they are scanned.
+     */
+    private int parse(byte[] sessionData) {
         ByteBufferKaitaiStream bbks = new ByteBufferKaitaiStream(sessionData);
         PythonPickle pickleData = new PythonPickle(bbks);
         List<Op> ops = pickleData.ops();
         Iterator<Op> opIterator = ops.iterator();
         String arg = null;
+        // Current memo offset, incremented each time a memo Opcode is
+        // encountered before we hit the connector
+        int memoOffset = 0;
         while (opIterator.hasNext()) {
             Op op = opIterator.next();
 
-            if (STRING_TYPE_OPCODES.contains(op.code())) {
+            if (op.code().isString()) {
                 arg = toString(op.arg());
                 if ("connector".equals(arg)) {
                     // When we find the string "connector" being memoized
                     // deserialize the dictionary we know is going to be
                     // present under that key and exit.
                     deserializeConnector(opIterator);
-                    return;
+                    return ops.size();
                 }
             } else if (PythonPickle.Opcode.MEMOIZE == op.code()) {
                 // If we've been asked to memoize a string, remember it,
@@ -117,6 +151,7 @@ public class PickledSessionConnector implements IConnector {
                 arg = null;
             }
         }
+        return ops.size();
     }
 
     private static String toString(Object string) {
@@ -144,7 +179,7 @@ public class PickledSessionConnector implements IConnector {
     private void deserializeConnector(Iterator<Op> opIterator) {
         while (opIterator.hasNext()) {
             Op op = opIterator.next();
-            if (STRING_TYPE_OPCODES.contains(op.code())) {
+            if (op.code().isString()) {
                 String fieldName = toString(op.arg());
                 try {
                     switch (fieldName) {
@@ -226,14 +261,45 @@ public class PickledSessionConnector implements IConnector {
         }
     }
 
+    /**
+     * Decodes a little endian two's complement integer as used by the
+     * <code>LONG1</code> and <code>LONG4</code> opcodes.
+     * @param bytesVal Encoded integer.
+     * @return Decoded value.
+     * @throws ArithmeticException If the value does not fit in a long.
+     */
     public static Long longFromBytes(byte[] bytesVal) {
-        if (bytesVal.length == 0) {
-            return Long.valueOf(0l);
+        return Long.valueOf(longFromBytes(bytesVal, 0, bytesVal.length));
+    }
+
+    /**
+     * Decodes a little endian two's complement integer as used by the
+     * <code>LONG1</code> and <code>LONG4</code> opcodes without allocating.
+     * @param bytesVal Buffer containing the encoded integer.
+     * @param offset Offset of the encoded integer within the buffer.
+     * @param length Length of the encoded integer in bytes.
+     * @return Decoded value.
+     * @throws ArithmeticException If the value does not fit in a long.
+     */
+    public static long longFromBytes(byte[] bytesVal, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < Math.min(length, 8); i++) {
+            value |= (bytesVal[offset + i] & 0xffL) << (i << 3);
+        }
+        if (length > 0 && length < 8) {
+            int shift = 64 - (length << 3);
+            return (value << shift) >> shift;
         }
-        byte[] revVal = Arrays.copyOf(bytesVal, bytesVal.length);
-        ArrayUtils.reverse(revVal);
-        BigInteger bigInt = new BigInteger(revVal);
-        return Long.valueOf(bigInt.longValue());
+        // Anything beyond eight bytes must be sign extension
+        byte sign = (byte) (value >> 63);
+        for (int i = 8; i < length; i++) {
+            if (bytesVal[offset + i] != sign) {
+                throw new ArithmeticException(
+                        "Pickled integer of " + length
+                        + " bytes overflows a long");
+            }
+        }
+        return value;
     }
 
     public static Long deserializeNumberField(Iterator<Op> opIterator) {
@@ -246,9 +312,14 @@ public class PickledSessionConnector implements IConnector {
             case BININT:
             case BININT1:
             case BININT2:
-                return Long.valueOf((Integer) value.arg());
+                return Long.valueOf(value.intArg());
             case LONG1:
-                return longFromBytes(((PythonPickle.Long1) value.arg()).val());
+            case LONG4:
+                if (!value.hasPrimitiveArg()) {
+                    throw new ArithmeticException(
+                        "Pickled integer overflows a long: " + value.code());
+                }
+                return Long.valueOf(value.longArg());
             default:
                 if (throwOnUnexpected) {
                     throw new IllegalArgumentException(
@@ -258,24 +329,59 @@ public class PickledSessionConnector implements IConnector {
         }
     }
 
+    /**
+     * @deprecated Use
+     * {@link #deserializeStringField(Iterator, PickleMemo)} instead.
+     */
+    @Deprecated
     public static String deserializeStringField(
             Iterator<Op> opIterator, Map<Integer, String> memo) {
+        return deserializeStringField(opIterator, toMemo(memo));
+    }
+
+    /**
+     * @deprecated Use
+     * {@link #handleStringValue(Op, PickleMemo, boolean)} instead.
+     */
+    @Deprecated
+    public static String handleStringValue(
+            Op value, Map<Integer, String> memo, boolean throwOnUnexpected) {
+        return handleStringValue(value, toMemo(memo), throwOnUnexpected);
+    }
+
+    /**
+     * Copies a map backed memo into a {@link PickleMemo}.
+     * @param memo Memoized strings by memo offset.
+     * @return See above.
+     */
+    private static PickleMemo toMemo(Map<Integer, String> memo) {
+        PickleMemo copy = new PickleMemo();
+        for (Map.Entry<Integer, String> entry : memo.entrySet()) {
+            Integer index = entry.getKey();
+            if (index != null && index >= 0) {
+                copy.put(index, entry.getValue());
+            }
+        }
+        return copy;
+    }
+
+    public static String deserializeStringField(
+            Iterator<Op> opIterator, PickleMemo memo) {
         assertStoreOpCode(opIterator);
         return handleStringValue(opIterator.next(), memo, true);
     }
 
     public static String handleStringValue(
-            Op value, Map<Integer, String> memo, boolean throwOnUnexpected) {
+            Op value, PickleMemo memo, boolean throwOnUnexpected) {
         String v = null;
-        if (STRING_TYPE_OPCODES.contains(value.code())) {
+        if (value.code().isString()) {
             v = toString(value.arg());
         } else if (value.code() == PythonPickle.Opcode.BINGET
                 || value.code() == PythonPickle.Opcode.LONG_BINGET) {
-            v = memo.get(value.arg());
+            v = memo.get(value.intArg());
             if (v == null) {
                 throw new IllegalArgumentException(
-                        "Failed to find key in memo: " +
-                        value.arg().toString());
+                        "Failed to find key in memo: " + value.longArg());
             }
         } else if (throwOnUnexpected){
             throw new IllegalArgumentException(
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.LoggerFactory;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Vert.x web request handler which serves a Prometheus registry.  The
+ * exposition format is negotiated from the <code>Accept</code> header:
+ * scrapers which accept <code>application/openmetrics-text</code> receive
+ * OpenMetrics text, including exemplars such as the trace identifiers
+ * recorded by {@link PrometheusSpanHandler}, and all others the Prometheus
+ * text format.  Metric families can be restricted with one or more
+ * <code>name[]</code> query parameters.  Metrics are serialized on a
+ * worker thread rather than the event loop.
+ */
+public class PrometheusMetricsHandler implements Handler<RoutingContext> {
+
+    private static final org.slf4j.Logger log =
+            LoggerFactory.getLogger(PrometheusMetricsHandler.class);
+
+    /** Registry to serve */
+    private final CollectorRegistry registry;
+
+    /**
+     * Default constructor.  Serves the default registry.
+     */
+    public PrometheusMetricsHandler() {
+        this(CollectorRegistry.defaultRegistry);
+    }
+
+    /**
+     * Constructor.
+     * @param registry Registry to serve.
+     */
+    public PrometheusMetricsHandler(CollectorRegistry registry) {
+        this.registry = registry;
+    }
+
+    /* (non-Javadoc)
+     * @see io.vertx.core.Handler#handle(java.lang.Object)
+     */
+    @Override
+    public void handle(RoutingContext event) {
+        String contentType = TextFormat.chooseContentType(
+                event.request().getHeader("Accept"));
+        List<String> names = event.queryParam("name[]");
+        Set<String> includedNames = new HashSet<String>(names);
+        // Collecting and serializing every metric family is too slow for
+        // the event loop once registries grow large
+        event.vertx().<String>executeBlocking(() -> {
+            StringWriter writer = new StringWriter();
+            TextFormat.writeFormat(contentType, writer,
+                    includedNames.isEmpty()
+                        ? registry.metricFamilySamples()
+                        : registry.filteredMetricFamilySamples(
+                                includedNames));
+            return writer.toString();
+        }, false).onComplete(result -> {
+            if (result.failed()) {
+                log.error("Failed to write metrics", result.cause());
+                event.response().setStatusCode(500).end();
+                return;
+            }
+            event.response()
+                .putHeader("Content-Type", contentType)
+                .end(result.result());
+        });
+    }
+
+}
@@ -18,17 +18,39 @@
 
 package com.glencoesoftware.omero.ms.core;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.slf4j.LoggerFactory;
 
 import brave.handler.FinishedSpanHandler;
 import brave.handler.MutableSpan;
 import brave.propagation.TraceContext;
 
-import io.prometheus.client.Summary;
+import io.prometheus.client.Histogram;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 
 /**
  * Brave FinishSpanHandler which if registered records
- * a prometheus timestamp metric every time a span is finished.
+ * a prometheus histogram observation every time a span is finished.
+ * <p>
+ * Durations are recorded in the <code>spanDurationMs</code> histogram.
+ * It replaces the <code>spanDuration</code> summary of earlier releases,
+ * which is no longer exported; dashboards and alerts using quantiles of
+ * <code>spanDuration</code> must move to
+ * <code>histogram_quantile()</code> over <code>spanDurationMs_bucket</code>,
+ * and spans without an error are labelled <code>none</code> rather than
+ * with an empty string.
+ * <p>
+ * Observations are labelled by span name and a bounded error class rather
+ * than the raw <code>error</code> tag, which for exceptions is an arbitrary
+ * message.  The error class is one of <code>none</code>,
+ * <code>client</code> or <code>server</code> for HTTP status codes, the
+ * simple name of an allowlisted exception type or <code>exception</code>.
+ * Observations of sampled spans carry the trace identifier as an
+ * OpenMetrics exemplar so that slow buckets link to representative traces.
  * @author Kevin Kozlowski <kevin@glencoesoftware.com>
  *
  */
@@ -38,38 +60,195 @@ public class PrometheusSpanHandler extends FinishedSpanHandler {
     private static final org.slf4j.Logger log =
             LoggerFactory.getLogger(PrometheusSpanHandler.class);
 
+    /** Default histogram buckets in milliseconds */
+    public static final double[] DEFAULT_BUCKETS = new double[] {
+        0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500,
+        5000, 10000
+    };
+
+    /** Default exception types reported by name */
+    public static final String[] DEFAULT_EXCEPTIONS = new String[] {
+        "com.glencoesoftware.omero.ms.core.CircuitBreakerOpenException",
+        "java.util.concurrent.TimeoutException"
+    };
+
+    /** Error class of spans without an error */
+    private static final String NONE = "none";
+
+    /** Error class of spans with a 4xx HTTP status code */
+    private static final String CLIENT = "client";
+
+    /** Error class of spans with a 5xx HTTP status code */
+    private static final String SERVER = "server";
+
+    /** Error class of spans with any other error */
+    private static final String EXCEPTION = "exception";
+
     /**
-     * The Prometheus Summary which will be used to
+     * The Prometheus Histogram which will be used to
      * record the duration of the spans
      */
-    private Summary spanDuration;
+    private Histogram spanDuration;
+
+    /** Error classes by allowlisted exception class name */
+    private final Map<String, String> exceptions =
+            new HashMap<String, String>();
+
+    /** Histogram children by span name and error class */
+    private final ConcurrentHashMap<String, Map<String, Histogram.Child>>
+            children =
+                new ConcurrentHashMap<String, Map<String, Histogram.Child>>();
 
     /**
-     * Default constructor. Sets up the Prometheus Summary
-     * to record the span durations by span name.
+     * Default constructor. Sets up the Prometheus Histogram
+     * to record the span durations by span name with the default buckets
+     * and exception allowlist.
      * Spans recording the same operation should have the same name.
      */
     public PrometheusSpanHandler() {
-        spanDuration = Summary.build()
-                .name("spanDuration")
+        this(new JsonObject());
+    }
+
+    /**
+     * Constructor.
+     * @param config Microservice wide configuration.  Histogram buckets in
+     * milliseconds and the exception types reported by name are read from
+     * <code>span-metrics</code>:
+     * <pre>
+     * "span-metrics": {
+     *     "buckets": [0.1, 0.5, 1, 5, 10, 50, 100, 500, 1000, 5000],
+     *     "exceptions": ["java.util.concurrent.TimeoutException"]
+     * }
+     * </pre>
+     */
+    public PrometheusSpanHandler(JsonObject config) {
+        JsonObject spanMetrics =
+                config.getJsonObject("span-metrics", new JsonObject());
+        double[] buckets = DEFAULT_BUCKETS;
+        JsonArray configuredBuckets = spanMetrics.getJsonArray("buckets");
+        if (configuredBuckets != null) {
+            buckets = new double[configuredBuckets.size()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = configuredBuckets.getDouble(i);
+            }
+        }
+        JsonArray configuredExceptions =
+                spanMetrics.getJsonArray("exceptions");
+        if (configuredExceptions != null) {
+            for (int i = 0; i < configuredExceptions.size(); i++) {
+                addException(configuredExceptions.getString(i));
+            }
+        } else {
+            for (String exception : DEFAULT_EXCEPTIONS) {
+                addException(exception);
+            }
+        }
+        spanDuration = Histogram.build()
+                .name("spanDurationMs")
                 .labelNames("spanName", "error")
-                .help("The duration of spans")
+                .buckets(buckets)
+                .withExemplars()
+                .help("The duration of spans in milliseconds")
                 .register();
     }
 
+    private void addException(String className) {
+        exceptions.put(className,
+                className.substring(className.lastIndexOf('.') + 1));
+    }
+
     /**
      * The function which gets called on span.finish()
      * Records the name and duration of the span.
      */
     @Override
     public boolean handle(TraceContext context, MutableSpan span) {
-        String errorVal = "";
-        if (span.tag("error") != null) {
-            errorVal = span.tag("error");
+        Histogram.Child child = child(span.name(), errorClass(span));
+        double duration =
+                (span.finishTimestamp() - span.startTimestamp()) / 1000.0;
+        if (Boolean.TRUE.equals(context.sampled())) {
+            // Only sampled traces can be looked up by their identifier
+            child.observeWithExemplar(
+                    duration, "trace_id", context.traceIdString());
+        } else {
+            child.observe(duration);
         }
-        spanDuration.labels(span.name(), errorVal).observe(
-                (span.finishTimestamp() - span.startTimestamp())/1000);
         return true;
     }
 
+    /**
+     * @param spanName Span name.
+     * @param errorClass Error class.
+     * @return The cached histogram child for the label values.
+     */
+    private Histogram.Child child(String spanName, String errorClass) {
+        // Span names are null when a span was never named
+        String name = spanName == null ? "" : spanName;
+        Map<String, Histogram.Child> byErrorClass = children.get(name);
+        if (byErrorClass == null) {
+            byErrorClass = children.computeIfAbsent(name,
+                    k -> new ConcurrentHashMap<String, Histogram.Child>());
+        }
+        Histogram.Child child = byErrorClass.get(errorClass);
+        if (child == null) {
+            child = byErrorClass.computeIfAbsent(
+                    errorClass, k -> spanDuration.labels(name, k));
+        }
+        return child;
+    }
+
+    /**
+     * Reduces the error state of a span to a bounded error class.
+     * @param span Finished span.
+     * @return See above.
+     */
+    String errorClass(MutableSpan span) {
+        Throwable error = span.error();
+        if (error != null) {
+            String errorClass = exceptions.get(error.getClass().getName());
+            return errorClass != null ? errorClass : EXCEPTION;
+        }
+        String statusCode = span.tag("http.status_code");
+        String errorTag = span.tag("error");
+        if (statusCode == null && errorTag == null) {
+            return NONE;
+        }
+        // Brave's HTTP parsers tag errors with the status code
+        int status = parseStatus(statusCode);
+        if (status < 0) {
+            status = parseStatus(errorTag);
+        }
+        if (status >= 500) {
+            return SERVER;
+        }
+        if (status >= 400) {
+            return CLIENT;
+        }
+        if (errorTag == null) {
+            return NONE;
+        }
+        log.trace("Unclassified span error: {}", errorTag);
+        return EXCEPTION;
+    }
+
+    /**
+     * @param value Tag value.
+     * @return The HTTP status code in <code>value</code> or <code>-1</code>
+     * if it is not one.
+     */
+    private static int parseStatus(String value) {
+        if (value == null || value.length() != 3) {
+            return -1;
+        }
+        int status = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            status = status * 10 + (c - '0');
+        }
+        return status;
+    }
+
 }
@@ -1,6 +1,11 @@
-/* This is a generated file! Please edit source .ksy file and use kaitai-struct-compiler to rebuild
+/* This file was generated by kaitai-struct-compiler and then modified by hand
  * It was compiled from python_pickle.ksy in git@github.com:kaitai-io/kaitai_struct_formats.git
  * commit cde1b06de6fc639df99cd62fca9cd07634c64d2a on 2020/02/20
+ *
+ * Opcode lookup and integer argument decoding have been changed by hand to
+ * avoid boxing; the changes are kept in src/main/kaitai/PythonPickle.java.patch
+ * which must be reapplied to the output of kaitai-struct-compiler whenever
+ * this file is regenerated.
 */
 
 package com.glencoesoftware.omero.ms.core;
@@ -9,8 +14,6 @@ import io.kaitai.struct.ByteBufferKaitaiStream;
 import io.kaitai.struct.KaitaiStruct;
 import io.kaitai.struct.KaitaiStream;
 import java.io.IOException;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.ArrayList;
 import java.nio.charset.Charset;
 
@@ -70,9 +73,9 @@ public class PythonPickle extends KaitaiStruct {
         REDUCE(82),
         STRING(83),
         BINSTRING(84),
-        SHORT_BINSTRING(85),
-        UNICODE(86),
-        BINUNICODE(88),
+        SHORT_BINSTRING(85, true),
+        UNICODE(86, true),
+        BINUNICODE(88, true),
         EMPTY_LIST(93),
         APPEND(97),
         BUILD(98),
@@ -104,8 +107,8 @@ public class PythonPickle extends KaitaiStruct {
         NEWFALSE(137),
         LONG1(138),
         LONG4(139),
-        SHORT_BINUNICODE(140),
-        BINUNICODE8(141),
+        SHORT_BINUNICODE(140, true),
+        BINUNICODE8(141, true),
         BINBYTES8(142),
         EMPTY_SET(143),
         ADDITEMS(144),
@@ -119,14 +122,25 @@ public class PythonPickle extends KaitaiStruct {
         READ_BUFFER(152);
 
         private final long id;
-        Opcode(long id) { this.id = id; }
+        private final boolean isString;
+        Opcode(long id) { this(id, false); }
+        Opcode(long id, boolean isString) { this.id = id; this.isString = isString; }
         public long id() { return id; }
-        private static final Map<Long, Opcode> byId = new HashMap<Long, Opcode>(68);
+
+        /**
+         * Whether or not the argument of the opcode is a string.
+         */
+        public boolean isString() { return isString; }
+
+        /** Opcodes indexed by their single byte identifier */
+        private static final Opcode[] byId = new Opcode[256];
         static {
             for (Opcode e : Opcode.values())
-                byId.put(e.id(), e);
+                byId[(int) e.id()] = e;
+        }
+        public static Opcode byId(long id) {
+            return id >= 0 && id < byId.length ? byId[(int) id] : null;
         }
-        public static Opcode byId(long id) { return byId.get(id); }
     }
 
     public PythonPickle(KaitaiStream _io) {
@@ -846,7 +860,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case EXT2: {
-                this.arg = (Object) (this._io.readU2le());
+                this.primitiveArg = this._io.readU2le();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case READ_BUFFER: {
@@ -870,7 +885,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case LONG1: {
-                this.arg = new Long1(this._io, this, _root);
+                this.argPos = this._io.pos();
+                readLong(this._io.readU1());
                 break;
             }
             case UNICODE: {
@@ -894,19 +910,23 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case BININT: {
-                this.arg = (Object) (this._io.readS4le());
+                this.primitiveArg = this._io.readS4le();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case BINPUT: {
-                this.arg = (Object) (this._io.readU1());
+                this.primitiveArg = this._io.readU1();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case BININT1: {
-                this.arg = (Object) (this._io.readU1());
+                this.primitiveArg = this._io.readU1();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case BININT2: {
-                this.arg = (Object) (this._io.readU2le());
+                this.primitiveArg = this._io.readU2le();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case TUPLE: {
@@ -930,7 +950,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case BINGET: {
-                this.arg = (Object) (this._io.readU1());
+                this.primitiveArg = this._io.readU1();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case APPEND: {
@@ -970,7 +991,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case FRAME: {
-                this.arg = (Object) (this._io.readU8le());
+                this.primitiveArg = this._io.readU8le();
+                this.primitiveArgType = LONG_ARG;
                 break;
             }
             case FLOAT: {
@@ -986,7 +1008,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case LONG_BINPUT: {
-                this.arg = (Object) (this._io.readU4le());
+                this.primitiveArg = this._io.readU4le();
+                this.primitiveArgType = LONG_ARG;
                 break;
             }
             case EMPTY_TUPLE: {
@@ -1030,7 +1053,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case EXT4: {
-                this.arg = (Object) (this._io.readU4le());
+                this.primitiveArg = this._io.readU4le();
+                this.primitiveArgType = LONG_ARG;
                 break;
             }
             case NEWOBJ_EX: {
@@ -1050,7 +1074,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case LONG4: {
-                this.arg = new Long4(this._io, this, _root);
+                this.argPos = this._io.pos();
+                readLong(this._io.readU4le());
                 break;
             }
             case SHORT_BINUNICODE: {
@@ -1066,7 +1091,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case EXT1: {
-                this.arg = (Object) (this._io.readU1());
+                this.primitiveArg = this._io.readU1();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case DICT: {
@@ -1090,7 +1116,8 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case PROTO: {
-                this.arg = (Object) (this._io.readU1());
+                this.primitiveArg = this._io.readU1();
+                this.primitiveArgType = INT_ARG;
                 break;
             }
             case NEWTRUE: {
@@ -1110,13 +1137,63 @@ public class PythonPickle extends KaitaiStruct {
                 break;
             }
             case LONG_BINGET: {
-                this.arg = (Object) (this._io.readU4le());
+                this.primitiveArg = this._io.readU4le();
+                this.primitiveArgType = LONG_ARG;
                 break;
             }
             }
         }
+
+        /**
+         * Reads a little endian two's complement <code>LONG1</code> or
+         * <code>LONG4</code> payload of <code>len</code> bytes directly from
+         * the stream into the primitive argument.  Payloads whose value does
+         * not fit in 64 bits are instead read into a {@link Long1} or
+         * {@link Long4} as {@link #hasPrimitiveArg()} will be
+         * <code>false</code>.
+         */
+        private void readLong(long len) {
+            long value = 0;
+            for (long i = 0; i < len; i++) {
+                long b = this._io.readU1();
+                if (i < 8) {
+                    value |= b << (i << 3);
+                } else if (b != ((value >> 63) & 0xff)) {
+                    // Anything beyond eight bytes must be sign extension
+                    this._io.seek(argPos);
+                    this.arg = code == Opcode.LONG1
+                            ? new Long1(this._io, this, _root)
+                            : new Long4(this._io, this, _root);
+                    return;
+                }
+            }
+            if (len > 0 && len < 8) {
+                int shift = 64 - ((int) len << 3);
+                value = (value << shift) >> shift;
+            }
+            this.primitiveArg = value;
+            this.primitiveArgType = BIG_ARG;
+        }
+
+        /** No primitive argument */
+        private static final byte NO_PRIMITIVE_ARG = 0;
+        /** Primitive argument historically exposed as an {@link Integer} */
+        private static final byte INT_ARG = 1;
+        /** Primitive argument historically exposed as a {@link Long} */
+        private static final byte LONG_ARG = 2;
+        /**
+         * Primitive argument historically exposed as a {@link Long1} or
+         * {@link Long4}
+         */
+        private static final byte BIG_ARG = 3;
+
         private Opcode code;
         private Object arg;
+        private long primitiveArg;
+        private byte primitiveArgType = NO_PRIMITIVE_ARG;
+        /** Stream position of a <code>LONG1</code> or <code>LONG4</code>
+         * argument, used to read it lazily */
+        private int argPos;
         private PythonPickle _root;
         private PythonPickle _parent;
 
@@ -1129,9 +1206,58 @@ public class PythonPickle extends KaitaiStruct {
 
         /**
          * Optional argument for the operation. Data type and length
-         * are determined by the value of the opcode.
+         * are determined by the value of the opcode.  Integer arguments
+         * are boxed on demand, prefer {@link #intArg()} or
+         * {@link #longArg()}.
          */
-        public Object arg() { return arg; }
+        public Object arg() {
+            if (arg == null) {
+                if (primitiveArgType == INT_ARG) {
+                    arg = Integer.valueOf((int) primitiveArg);
+                } else if (primitiveArgType == LONG_ARG) {
+                    arg = Long.valueOf(primitiveArg);
+                } else if (primitiveArgType == BIG_ARG) {
+                    int pos = this._io.pos();
+                    this._io.seek(argPos);
+                    arg = code == Opcode.LONG1
+                            ? new Long1(this._io, this, _root)
+                            : new Long4(this._io, this, _root);
+                    this._io.seek(pos);
+                }
+            }
+            return arg;
+        }
+
+        /**
+         * Integer argument for the operation without boxing.  Only valid for
+         * opcodes with an integer argument which fits in 32 bits; use
+         * {@link #longArg()} for any other.
+         */
+        public int intArg() { return (int) primitiveArg; }
+
+        /**
+         * Integer argument for the operation as a long without boxing.  Valid
+         * for every opcode with an integer argument, including the unsigned
+         * 32 and 64 bit arguments of <code>LONG_BINPUT</code>,
+         * <code>LONG_BINGET</code>, <code>EXT4</code> and <code>FRAME</code>
+         * and the arbitrary precision <code>LONG1</code> and
+         * <code>LONG4</code> arguments provided their value fits in 64 bits.
+         * If it does not {@link #hasPrimitiveArg()} is <code>false</code>,
+         * this returns 0 and the value is only available via {@link #arg()}.
+         * <code>FRAME</code> lengths above {@link Long#MAX_VALUE} are
+         * returned as negative values.
+         */
+        public long longArg() { return primitiveArg; }
+
+        /**
+         * Whether or not the argument for the operation is available via
+         * {@link #intArg()} or {@link #longArg()}.  <code>false</code> for
+         * <code>LONG1</code> and <code>LONG4</code> operations whose value
+         * does not fit in 64 bits.
+         */
+        public boolean hasPrimitiveArg() {
+            return primitiveArgType != NO_PRIMITIVE_ARG;
+        }
         public PythonPickle _root() { return _root; }
         public PythonPickle _parent() { return _parent; }
     }
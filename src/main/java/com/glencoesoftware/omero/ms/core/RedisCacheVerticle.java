@@ -21,13 +21,8 @@ package com.glencoesoftware.omero.ms.core;
 
 import org.slf4j.LoggerFactory;
 
-import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisFuture;
-import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.api.async.RedisAsyncCommands;
-import io.lettuce.core.codec.ByteArrayCodec;
-import brave.ScopedSpan;
-import brave.Tracing;
+import io.lettuce.core.api.async.RedisStringAsyncCommands;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
@@ -47,11 +42,8 @@ public class RedisCacheVerticle extends AbstractVerticle {
     public static final String REDIS_CACHE_SET_EVENT =
             "omero.ms.core.redis_cache_set";
 
-    /** Redis client */
-    private RedisClient client;
-
-    /** Redis connection */
-    private StatefulRedisConnection<byte[], byte[]> connection;
+    /** Redis client and connections */
+    private RedisConnectionManager redis;
 
     /* (non-Javadoc)
      * @see io.vertx.core.AbstractVerticle#start()
@@ -60,11 +52,11 @@ public class RedisCacheVerticle extends AbstractVerticle {
     public void start() {
         log.info("Starting verticle");
 
+        // Standalone, master/replica, Sentinel and Cluster deployments are
+        // supported, see RedisConnectionManager
         JsonObject config = config().getJsonObject("redis-cache");
         if (config != null) {
-            String uri = config.getString("uri");
-            client = RedisClient.create(uri);
-            connection = client.connect(new ByteArrayCodec());
+            redis = new RedisConnectionManager("redis_cache", config);
         }
 
         vertx.eventBus().<String>consumer(
@@ -79,9 +71,8 @@ public class RedisCacheVerticle extends AbstractVerticle {
 
     @Override
     public void stop() {
-        if (connection != null) {
-          connection.close();
-          client.shutdown();
+        if (redis != null) {
+          redis.close();
         }
     }
 
@@ -89,7 +80,7 @@ public class RedisCacheVerticle extends AbstractVerticle {
      * Get a key from the cache.
      */
     private void get(Message<String> message) {
-        if (connection == null) {
+        if (redis == null) {
             log.debug("Cache not enabled");
             message.reply(null);
             return;
@@ -102,12 +93,17 @@ public class RedisCacheVerticle extends AbstractVerticle {
         }
         log.debug("Getting cache key: {}", key);
 
-        RedisAsyncCommands<byte[], byte[]> commands = connection.async();
-        ScopedSpan span = Tracing.currentTracer().startScopedSpan("get_redis_cache");
+        RedisStringAsyncCommands<byte[], byte[]> commands = redis.async();
+        TraceSpan span = Traces.startScopedSpan("get_redis_cache");
         span.tag("key", key);
+        FlightRecorderEvents.RedisCache event =
+                FlightRecorderEvents.redisCache();
         // Binary retrieval, get(String) includes a UTF-8 step
-        RedisFuture<byte[]> future = commands.get(key.getBytes());
+        byte[] keyBytes = key.getBytes();
+        RedisFuture<byte[]> future = commands.get(keyBytes);
         future.whenComplete((v, t) -> {
+            FlightRecorderEvents.commit(event, "get",
+                    keyBytes.length, v == null ? 0 : v.length);
             try {
                 if (t != null) {
                     log.error("Exception while getting cache value", t);
@@ -125,7 +121,7 @@ public class RedisCacheVerticle extends AbstractVerticle {
      * Set a key in the cache.
      */
     private void set(Message<JsonObject> message) {
-        if (connection == null) {
+        if (redis == null) {
             log.debug("Cache not enabled");
             message.reply(null);
             return;
@@ -140,12 +136,17 @@ public class RedisCacheVerticle extends AbstractVerticle {
         }
         log.debug("Setting cache key: {}", key);
 
-        RedisAsyncCommands<byte[], byte[]> commands = connection.async();
-        ScopedSpan span = Tracing.currentTracer().startScopedSpan("set_redis_cache");
+        RedisStringAsyncCommands<byte[], byte[]> commands = redis.async();
+        TraceSpan span = Traces.startScopedSpan("set_redis_cache");
         span.tag("key", key);
+        FlightRecorderEvents.RedisCache event =
+                FlightRecorderEvents.redisCache();
         // Binary retrieval, get(String) includes a UTF-8 step
-        RedisFuture<String> future = commands.set(key.getBytes(), value);
+        byte[] keyBytes = key.getBytes();
+        RedisFuture<String> future = commands.set(keyBytes, value);
         future.whenComplete((v, t) -> {
+            FlightRecorderEvents.commit(event, "set",
+                    keyBytes.length, value == null ? 0 : value.length);
             try {
                 if (t != null) {
                     log.error("Exception while setting cache value", t);
@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.LoggerFactory;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisStringAsyncCommands;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.pubsub.StatefulRedisClusterPubSubConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.masterreplica.MasterReplica;
+import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.resource.ClientResources;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Creates and owns the Redis client and binary connections used by the
+ * session store and cache verticle for one of the supported deployment
+ * topologies, selected via <code>mode</code>:
+ * <ul>
+ *   <li><code>standalone</code>: a single node at <code>uri</code></li>
+ *   <li><code>master_replica</code>: an upstream at <code>uri</code> plus
+ *   <code>replicas</code></li>
+ *   <li><code>sentinel</code>: a <code>redis-sentinel://</code>
+ *   <code>uri</code> including the master name, optionally plus further
+ *   sentinels in <code>uris</code> for the same master</li>
+ *   <li><code>cluster</code>: a Redis Cluster discovered from the
+ *   <code>uri</code> or <code>uris</code> seed nodes, with slot aware
+ *   routing and topology refresh</li>
+ * </ul>
+ * If <code>mode</code> is not specified <code>master_replica</code> is used
+ * when <code>replicas</code> are present and <code>standalone</code>
+ * otherwise.  Reads are routed according to <code>read_from</code> for all
+ * but standalone deployments.
+ * <p>
+ * Command latency, pending commands, bytes on the wire and connection
+ * events are exported to Prometheus by {@link RedisMetrics} unless
+ * <code>metrics</code> is <code>false</code>.
+ */
+public class RedisConnectionManager implements Closeable {
+
+    private static final org.slf4j.Logger log =
+            LoggerFactory.getLogger(RedisConnectionManager.class);
+
+    /** Supported Redis deployment topologies */
+    public enum Mode { STANDALONE, MASTER_REPLICA, SENTINEL, CLUSTER }
+
+    /** Deployment topology */
+    private final Mode mode;
+
+    /** Client resources, owned by this manager */
+    private final ClientResources resources;
+
+    /** Prometheus metrics of the client or <code>null</code> if disabled */
+    private final RedisMetrics metrics;
+
+    /** Redis client, either a {@link RedisClient} or a
+     * {@link RedisClusterClient} */
+    private final AbstractRedisClient client;
+
+    /**
+     * Nodes used for the master/replica topology or the single URI listing
+     * every sentinel for the sentinel topology
+     */
+    private final List<RedisURI> nodes;
+
+    /** All connections opened, closed on {@link #close()} */
+    private final List<StatefulConnection<byte[], byte[]>> connections =
+            new CopyOnWriteArrayList<StatefulConnection<byte[], byte[]>>();
+
+    /** Commands of the default connection */
+    private final RedisStringAsyncCommands<byte[], byte[]> commands;
+
+    /** Read routing of the default connection */
+    private final ReadFrom readFrom;
+
+    /**
+     * Constructor.
+     * @param config Redis configuration.
+     */
+    public RedisConnectionManager(JsonObject config) {
+        this("redis", config);
+    }
+
+    /**
+     * Constructor.
+     * @param name Name of the client, used to label its metrics.
+     * @param config Redis configuration.
+     */
+    public RedisConnectionManager(String name, JsonObject config) {
+        mode = mode(config);
+        nodes = nodes(mode, config);
+        readFrom = readFrom(mode, config);
+
+        if (config.getBoolean("metrics", true)) {
+            metrics = new RedisMetrics(name);
+            resources = ClientResources.builder()
+                    .commandLatencyRecorder(metrics)
+                    .nettyCustomizer(metrics)
+                    .build();
+            metrics.subscribe(resources.eventBus());
+        } else {
+            metrics = null;
+            resources = ClientResources.create();
+        }
+
+        switch (mode) {
+            case CLUSTER: {
+                RedisClusterClient clusterClient =
+                        RedisClusterClient.create(resources, nodes);
+                clusterClient.setOptions(ClusterClientOptions.builder()
+                        .topologyRefreshOptions(
+                            ClusterTopologyRefreshOptions.builder()
+                                .enablePeriodicRefresh(Duration.ofSeconds(
+                                    config.getLong("topology_refresh", 60L)))
+                                .enableAllAdaptiveRefreshTriggers()
+                                .build())
+                        .build());
+                client = clusterClient;
+                break;
+            }
+            case STANDALONE:
+                client = RedisClient.create(resources, nodes.get(0));
+                break;
+            default:
+                client = RedisClient.create(resources);
+        }
+        if (metrics != null) {
+            client.addListener(metrics);
+        }
+        log.info("Connecting to Redis in {} mode", mode);
+        commands = connect(readFrom);
+    }
+
+    /**
+     * Selects the deployment topology from configuration.
+     * @param config Redis configuration.
+     * @return <code>mode</code> if specified, otherwise
+     * {@link Mode#MASTER_REPLICA} when <code>replicas</code> are present and
+     * {@link Mode#STANDALONE} if not.
+     */
+    static Mode mode(JsonObject config) {
+        JsonArray replicas = config.getJsonArray("replicas");
+        boolean hasReplicas = replicas != null && !replicas.isEmpty();
+        return Mode.valueOf(config.getString(
+                "mode", hasReplicas ? "master_replica" : "standalone")
+                .toUpperCase());
+    }
+
+    /**
+     * Parses the nodes to connect to for a deployment topology.
+     * @param mode Deployment topology.
+     * @param config Redis configuration.
+     * @return Cluster seed nodes, the upstream followed by its replicas, a
+     * single URI listing every configured sentinel or the standalone node.
+     * @throws IllegalArgumentException If no nodes are configured or
+     * sentinels are configured for different masters.
+     */
+    static List<RedisURI> nodes(Mode mode, JsonObject config) {
+        List<RedisURI> nodes = new ArrayList<RedisURI>();
+        String uri = config.getString("uri");
+        if (uri != null) {
+            nodes.add(RedisURI.create(uri));
+        }
+        JsonArray more = config.getJsonArray(
+                mode == Mode.MASTER_REPLICA ? "replicas" : "uris");
+        for (int i = 0;
+                mode != Mode.STANDALONE && more != null && i < more.size();
+                i++) {
+            nodes.add(RedisURI.create(more.getString(i)));
+        }
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "No Redis URI configured for " + mode + " mode");
+        }
+        if (mode != Mode.SENTINEL) {
+            return nodes;
+        }
+
+        // Sentinel discovery is only performed when connecting with a
+        // single redis-sentinel:// URI, which tries each of its sentinels
+        // in turn, so merge them
+        RedisURI merged = nodes.get(0);
+        for (RedisURI node : nodes.subList(1, nodes.size())) {
+            if (!Objects.equals(merged.getSentinelMasterId(),
+                    node.getSentinelMasterId())) {
+                throw new IllegalArgumentException(
+                        "Sentinels configured for different masters");
+            }
+            merged.getSentinels().addAll(node.getSentinels());
+        }
+        List<RedisURI> sentinel = new ArrayList<RedisURI>();
+        sentinel.add(merged);
+        return sentinel;
+    }
+
+    /**
+     * Parses the read routing of the default connection.
+     * @param mode Deployment topology.
+     * @param config Redis configuration.
+     * @return <code>read_from</code>, defaulting to replicas preferred for
+     * master/replica deployments and the upstream otherwise, or
+     * <code>null</code> for standalone deployments.
+     */
+    static ReadFrom readFrom(Mode mode, JsonObject config) {
+        switch (mode) {
+            case STANDALONE:
+                return null;
+            case MASTER_REPLICA:
+                return ReadFrom.valueOf(
+                        config.getString("read_from", "replicaPreferred"));
+            default:
+                return ReadFrom.valueOf(
+                        config.getString("read_from", "upstream"));
+        }
+    }
+
+    /**
+     * @return Deployment topology in use.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return Whether or not reads can be routed to specific nodes using
+     * {@link #connect(ReadFrom)}.
+     */
+    public boolean supportsReadFrom() {
+        return mode != Mode.STANDALONE;
+    }
+
+    /**
+     * @return Read routing of the default connection or <code>null</code>
+     * for standalone deployments.
+     */
+    public ReadFrom getReadFrom() {
+        return readFrom;
+    }
+
+    /**
+     * @return Client resources, including the event executor group, in use
+     * by the Redis client.
+     */
+    public ClientResources getResources() {
+        return client.getResources();
+    }
+
+    /**
+     * @return The Redis client, either a {@link RedisClient} or a
+     * {@link RedisClusterClient}.
+     */
+    public AbstractRedisClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return Asynchronous commands of the default connection.
+     */
+    public RedisStringAsyncCommands<byte[], byte[]> async() {
+        return commands;
+    }
+
+    /**
+     * Opens an additional binary connection.
+     * @param readFrom Read routing for the connection, ignored for
+     * standalone deployments.
+     * @return Asynchronous commands of the new connection.
+     */
+    public RedisStringAsyncCommands<byte[], byte[]> connect(
+            ReadFrom readFrom) {
+        ByteArrayCodec codec = new ByteArrayCodec();
+        switch (mode) {
+            case CLUSTER: {
+                StatefulRedisClusterConnection<byte[], byte[]> connection =
+                        ((RedisClusterClient) client).connect(codec);
+                connection.setReadFrom(readFrom);
+                connections.add(connection);
+                return connection.async();
+            }
+            case MASTER_REPLICA:
+            case SENTINEL: {
+                // Sentinel discovery is only performed when connecting
+                // with a single redis-sentinel:// URI, see nodes()
+                StatefulRedisMasterReplicaConnection<byte[], byte[]>
+                    connection = mode == Mode.SENTINEL
+                        ? MasterReplica.connect(
+                            (RedisClient) client, codec, nodes.get(0))
+                        : MasterReplica.connect(
+                            (RedisClient) client, codec, nodes);
+                connection.setReadFrom(readFrom);
+                connections.add(connection);
+                return connection.async();
+            }
+            default: {
+                StatefulRedisConnection<byte[], byte[]> connection =
+                        ((RedisClient) client).connect(codec);
+                connections.add(connection);
+                return connection.async();
+            }
+        }
+    }
+
+    /**
+     * Opens an additional binary publish/subscribe connection.  For
+     * master/replica and sentinel deployments the connection is to the
+     * upstream.  For cluster deployments messages received from individual
+     * nodes are propagated to the connection's listeners so that node local
+     * keyspace notifications can be subscribed to on all upstreams.
+     * @return The new connection.
+     */
+    public StatefulRedisPubSubConnection<byte[], byte[]> connectPubSub() {
+        ByteArrayCodec codec = new ByteArrayCodec();
+        StatefulRedisPubSubConnection<byte[], byte[]> connection;
+        switch (mode) {
+            case CLUSTER: {
+                StatefulRedisClusterPubSubConnection<byte[], byte[]>
+                    clusterConnection =
+                        ((RedisClusterClient) client).connectPubSub(codec);
+                clusterConnection.setNodeMessagePropagation(true);
+                connection = clusterConnection;
+                break;
+            }
+            case MASTER_REPLICA:
+            case SENTINEL:
+                // Sentinel URIs list every configured sentinel, each is
+                // asked in turn for the current master until one answers
+                connection = ((RedisClient) client).connectPubSub(
+                        codec, nodes.get(0));
+                break;
+            default:
+                connection = ((RedisClient) client).connectPubSub(codec);
+        }
+        connections.add(connection);
+        return connection;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        for (StatefulConnection<byte[], byte[]> connection : connections) {
+            connection.close();
+        }
+        client.shutdown();
+        if (metrics != null) {
+            metrics.close();
+        }
+        resources.shutdown();
+    }
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.io.Closeable;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.lettuce.core.event.Event;
+import io.lettuce.core.event.EventBus;
+import io.lettuce.core.event.command.CommandFailedEvent;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import io.lettuce.core.event.command.CommandSucceededEvent;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ConnectionDeactivatedEvent;
+import io.lettuce.core.event.connection.ReconnectAttemptEvent;
+import io.lettuce.core.event.connection.ReconnectFailedEvent;
+import io.lettuce.core.metrics.CommandLatencyRecorder;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.lettuce.core.resource.NettyCustomizer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import reactor.core.Disposable;
+
+/**
+ * Exports Redis level metrics of a Lettuce client to Prometheus so that
+ * Redis latency can be told apart from our own processing time:
+ * <ul>
+ *   <li>per command latency until the first response and until
+ *   completion, as measured by Lettuce between writing a command and
+ *   decoding its reply</li>
+ *   <li>commands dispatched but not yet completed, including those
+ *   buffered while disconnected</li>
+ *   <li>bytes sent and received on the wire</li>
+ *   <li>active connections, reconnect attempts and failed reconnects</li>
+ * </ul>
+ * All metrics are labelled with the name of the client.  An instance must
+ * be set as both the command latency recorder and Netty customizer of the
+ * client's resources, added as a command listener of the client and
+ * subscribed to the resources' event bus.
+ * @see RedisConnectionManager
+ */
+public class RedisMetrics implements CommandLatencyRecorder, CommandListener,
+        NettyCustomizer, Closeable {
+
+    /** Histogram buckets in milliseconds */
+    private static final double[] BUCKETS = new double[] {
+        0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000
+    };
+
+    /** Latency until completion by command */
+    private static final Histogram COMMAND_LATENCY = Histogram.build()
+            .name("redisCommandLatency")
+            .labelNames("client", "command")
+            .buckets(BUCKETS)
+            .help("Redis command latency until completion in milliseconds")
+            .register();
+
+    /** Latency until the first response by command */
+    private static final Histogram FIRST_RESPONSE_LATENCY = Histogram.build()
+            .name("redisCommandFirstResponseLatency")
+            .labelNames("client", "command")
+            .buckets(BUCKETS)
+            .help("Redis command latency until the first response in "
+                    + "milliseconds")
+            .register();
+
+    /** Commands dispatched but not yet completed */
+    private static final Gauge PENDING_COMMANDS = Gauge.build()
+            .name("redisPendingCommands")
+            .labelNames("client")
+            .help("Redis commands dispatched but not yet completed")
+            .register();
+
+    /** Bytes on the wire by direction */
+    private static final Counter BYTES = Counter.build()
+            .name("redisBytes")
+            .labelNames("client", "direction")
+            .help("Bytes sent to and received from Redis")
+            .register();
+
+    /** Active connections */
+    private static final Gauge CONNECTIONS = Gauge.build()
+            .name("redisConnections")
+            .labelNames("client")
+            .help("Active Redis connections")
+            .register();
+
+    /** Connection events by type */
+    private static final Counter CONNECTION_EVENTS = Counter.build()
+            .name("redisConnectionEvents")
+            .labelNames("client", "event")
+            .help("Redis connection events")
+            .register();
+
+    /** Name of the client */
+    private final String name;
+
+    /** Children of the latency histograms by command type */
+    private final ConcurrentHashMap<ProtocolKeyword, Histogram.Child[]>
+            latencies =
+                new ConcurrentHashMap<ProtocolKeyword, Histogram.Child[]>();
+
+    private final Gauge.Child pending;
+
+    private final Counter.Child sent;
+
+    private final Counter.Child received;
+
+    private final Gauge.Child connections;
+
+    private final Counter.Child activated;
+
+    private final Counter.Child deactivated;
+
+    private final Counter.Child reconnectAttempts;
+
+    private final Counter.Child reconnectFailures;
+
+    /** Counts bytes of every channel */
+    private final ByteCounter byteCounter = new ByteCounter();
+
+    /** Event bus subscription or <code>null</code> if not subscribed */
+    private volatile Disposable subscription;
+
+    /**
+     * Constructor.
+     * @param name Name of the client, used as the <code>client</code> label.
+     */
+    public RedisMetrics(String name) {
+        this.name = name;
+        pending = PENDING_COMMANDS.labels(name);
+        sent = BYTES.labels(name, "sent");
+        received = BYTES.labels(name, "received");
+        connections = CONNECTIONS.labels(name);
+        activated = CONNECTION_EVENTS.labels(name, "activated");
+        deactivated = CONNECTION_EVENTS.labels(name, "deactivated");
+        reconnectAttempts = CONNECTION_EVENTS.labels(name, "reconnect_attempt");
+        reconnectFailures = CONNECTION_EVENTS.labels(name, "reconnect_failed");
+    }
+
+    /**
+     * Subscribes to connection events.
+     * @param eventBus Event bus of the client's resources.
+     */
+    public void subscribe(EventBus eventBus) {
+        subscription = eventBus.get().subscribe(this::onEvent);
+    }
+
+    /**
+     * Updates connection metrics.
+     * @param event Lettuce event.
+     */
+    void onEvent(Event event) {
+        if (event instanceof ConnectionActivatedEvent) {
+            activated.inc();
+            connections.inc();
+        } else if (event instanceof ConnectionDeactivatedEvent) {
+            deactivated.inc();
+            connections.dec();
+        } else if (event instanceof ReconnectAttemptEvent) {
+            reconnectAttempts.inc();
+        } else if (event instanceof ReconnectFailedEvent) {
+            reconnectFailures.inc();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see io.lettuce.core.metrics.CommandLatencyRecorder#recordCommandLatency(java.net.SocketAddress, java.net.SocketAddress, io.lettuce.core.protocol.ProtocolKeyword, long, long)
+     */
+    @Override
+    public void recordCommandLatency(SocketAddress local, SocketAddress remote,
+            ProtocolKeyword commandType, long firstResponseLatency,
+            long completionLatency) {
+        Histogram.Child[] children = latencies.get(commandType);
+        if (children == null) {
+            // The command as sent on the wire, custom keywords included
+            String command = new String(
+                    commandType.getBytes(), StandardCharsets.US_ASCII);
+            children = latencies.computeIfAbsent(commandType, k ->
+                    new Histogram.Child[] {
+                        FIRST_RESPONSE_LATENCY.labels(name, command),
+                        COMMAND_LATENCY.labels(name, command)
+                    });
+        }
+        children[0].observe(firstResponseLatency / 1000000.0);
+        children[1].observe(completionLatency / 1000000.0);
+    }
+
+    /* (non-Javadoc)
+     * @see io.lettuce.core.event.command.CommandListener#commandStarted(io.lettuce.core.event.command.CommandStartedEvent)
+     */
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        pending.inc();
+    }
+
+    /* (non-Javadoc)
+     * @see io.lettuce.core.event.command.CommandListener#commandSucceeded(io.lettuce.core.event.command.CommandSucceededEvent)
+     */
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        pending.dec();
+    }
+
+    /* (non-Javadoc)
+     * @see io.lettuce.core.event.command.CommandListener#commandFailed(io.lettuce.core.event.command.CommandFailedEvent)
+     */
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        pending.dec();
+    }
+
+    /**
+     * Counts bytes from the socket side of the pipeline, before TLS, so
+     * that the wire size is recorded.
+     * @see io.lettuce.core.resource.NettyCustomizer#afterChannelInitialized(io.netty.channel.Channel)
+     */
+    @Override
+    public void afterChannelInitialized(Channel channel) {
+        channel.pipeline().addFirst("redisMetrics", byteCounter);
+    }
+
+    /**
+     * @return Handler counting the bytes of every channel it is added to.
+     */
+    ChannelDuplexHandler getByteCounter() {
+        return byteCounter;
+    }
+
+    /**
+     * Stops updating connection metrics.
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        Disposable subscription = this.subscription;
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private static int size(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Counts bytes read from and written to channels.
+     */
+    @Sharable
+    private final class ByteCounter extends ChannelDuplexHandler {
+
+        /* (non-Javadoc)
+         * @see io.netty.channel.ChannelInboundHandlerAdapter#channelRead(io.netty.channel.ChannelHandlerContext, java.lang.Object)
+         */
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg)
+                throws Exception {
+            int size = size(msg);
+            if (size > 0) {
+                received.inc(size);
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        /* (non-Javadoc)
+         * @see io.netty.channel.ChannelDuplexHandler#write(io.netty.channel.ChannelHandlerContext, java.lang.Object, io.netty.channel.ChannelPromise)
+         */
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg,
+                ChannelPromise promise) throws Exception {
+            int size = size(msg);
+            if (size > 0) {
+                sent.inc(size);
+            }
+            ctx.write(msg, promise);
+        }
+    }
+
+}
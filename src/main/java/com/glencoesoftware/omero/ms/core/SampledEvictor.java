@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounds the size of a {@link ConcurrentHashMap} of expiring values without
+ * scanning it.  Each eviction round samples a few entries using a clock
+ * hand resumed across evictions and removes the one which expires first;
+ * when every value shares the same time to live that is an expired entry
+ * if one was sampled, and otherwise the oldest one sampled.  Only one
+ * thread evicts at a time, others skip eviction rather than block, so the
+ * map may briefly exceed its maximum size.
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public class SampledEvictor<K, V> {
+
+    /** Entries sampled per eviction round */
+    private static final int SAMPLES = 5;
+
+    /** Map to bound */
+    private final ConcurrentHashMap<K, V> map;
+
+    /** Maximum number of entries */
+    private final int maxSize;
+
+    /** {@link System#nanoTime()} after which a value has expired */
+    private final ToLongFunction<V> expires;
+
+    /** Notified of each value evicted */
+    private final Consumer<V> onEvicted;
+
+    /** Whether or not a thread is currently evicting */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Clock hand over the map, resumed by each eviction; only accessed
+     * while holding <code>evicting</code>.
+     */
+    private Iterator<Map.Entry<K, V>> hand;
+
+    /**
+     * Constructor.
+     * @param map Map to bound.
+     * @param maxSize Maximum number of entries.
+     * @param expires Returns the {@link System#nanoTime()} after which a
+     * value has expired.
+     * @param onEvicted Notified of each value evicted.
+     */
+    public SampledEvictor(
+            ConcurrentHashMap<K, V> map, int maxSize,
+            ToLongFunction<V> expires, Consumer<V> onEvicted) {
+        this.map = map;
+        this.maxSize = maxSize;
+        this.expires = expires;
+        this.onEvicted = onEvicted;
+    }
+
+    /**
+     * Brings the map back within its maximum size, if another thread is not
+     * already doing so.
+     * @param added Key of the entry just added, which is never evicted.
+     */
+    public void evict(K added) {
+        if (map.size() <= maxSize || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (map.size() > maxSize) {
+                Map.Entry<K, V> victim = null;
+                for (int i = 0; i < SAMPLES; i++) {
+                    if (hand == null || !hand.hasNext()) {
+                        hand = map.entrySet().iterator();
+                        if (!hand.hasNext()) {
+                            break;
+                        }
+                    }
+                    Map.Entry<K, V> candidate = hand.next();
+                    if (candidate.getKey().equals(added)) {
+                        continue;
+                    }
+                    if (victim == null
+                            || expires.applyAsLong(candidate.getValue())
+                            - expires.applyAsLong(victim.getValue()) < 0) {
+                        victim = candidate;
+                    }
+                }
+                if (victim == null) {
+                    return;
+                }
+                if (map.remove(victim.getKey(), victim.getValue())) {
+                    onEvicted.accept(victim.getValue());
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.prometheus.client.Counter;
+import io.vertx.core.Context;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Two level cache of connectors by Django session key.  The second level is
+ * a lock free map shared by all threads.  When <code>per_event_loop</code>
+ * is enabled each Vert.x event loop thread additionally owns a first level
+ * shard which is only ever touched by that thread, so a hit is a plain map
+ * probe with no synchronization or shared cache line writes.  Shards are
+ * consulted first and populated from the second level on a miss.
+ * <p>
+ * Shard entries are the same objects as second level entries so that
+ * invalidating or replacing a second level entry also invalidates every
+ * shard's copy the next time it is probed.  Entries expire after
+ * <code>ttl</code> milliseconds, which bounds how long a connector whose
+ * session has been removed from the session store may still be used.
+ * The second level is bounded to <code>max_size</code> entries by a
+ * {@link SampledEvictor}.
+ * <p>
+ * A lookup in the session store may complete after the session it is for
+ * has been invalidated.  Callers obtain a {@link #version(String)} before
+ * the lookup and cache its result with
+ * {@link #put(String, IConnector, long)}, which discards the connector if
+ * the session key has been invalidated in the meantime.
+ */
+public class SessionCache implements SessionInvalidationListener {
+
+    /** Lookups by result */
+    private static final Counter REQUESTS = Counter.build()
+            .name("sessionCacheRequests")
+            .labelNames("result")
+            .help("Session cache lookups by result")
+            .register();
+
+    private static final Counter.Child L1_HITS = REQUESTS.labels("l1_hit");
+
+    private static final Counter.Child L2_HITS = REQUESTS.labels("l2_hit");
+
+    private static final Counter.Child MISSES = REQUESTS.labels("miss");
+
+    /** Number of invalidation generation stripes, a power of two */
+    private static final int GENERATION_STRIPES = 1024;
+
+    /** Cached connector, shared between the second level and shards */
+    private static final class CachedConnector {
+
+        private final IConnector connector;
+
+        /** {@link System#nanoTime()} after which the entry has expired */
+        private final long expires;
+
+        /**
+         * Set once the entry has been removed from or replaced in the second
+         * level; shards drop such entries when they next probe them.
+         */
+        private volatile boolean invalidated;
+
+        private CachedConnector(IConnector connector, long expires) {
+            this.connector = connector;
+            this.expires = expires;
+        }
+
+        private boolean isValid(long now) {
+            return !invalidated && now - expires < 0;
+        }
+    }
+
+    /** Whether or not the cache is enabled at all */
+    private final boolean enabled;
+
+    /** Entry time to live in nanoseconds */
+    private final long ttl;
+
+    /** Second level, shared by all threads */
+    private final ConcurrentHashMap<String, CachedConnector> entries;
+
+    /**
+     * First level shard owned by each event loop thread or
+     * <code>null</code> if shards are disabled.
+     */
+    private final FastThreadLocal<Map<String, CachedConnector>> shards;
+
+    /**
+     * Invalidation generations, striped by session key hash so that their
+     * memory is bounded; an invalidation of any session key in a stripe
+     * discards in flight puts of every session key in the stripe.
+     */
+    private final AtomicLongArray generations;
+
+    /**
+     * Bounds the second level to its maximum size or <code>null</code> if
+     * the cache is disabled.
+     */
+    private final SampledEvictor<String, CachedConnector> evictor;
+
+    /**
+     * Constructor.
+     * @param ttl Entry time to live in milliseconds.
+     * @param maxSize Maximum number of entries in the shared second level.
+     * @param shardSize Maximum number of entries in each event loop's shard
+     * or <code>0</code> to disable shards.
+     */
+    public SessionCache(long ttl, int maxSize, int shardSize) {
+        this.enabled = true;
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.entries = new ConcurrentHashMap<String, CachedConnector>();
+        this.shards = shardSize < 1 ? null : newShards(shardSize);
+        this.generations = new AtomicLongArray(GENERATION_STRIPES);
+        this.evictor = new SampledEvictor<String, CachedConnector>(
+                entries, maxSize, entry -> entry.expires,
+                entry -> entry.invalidated = true);
+    }
+
+    /** Disabled cache constructor */
+    private SessionCache() {
+        this.enabled = false;
+        this.ttl = 0;
+        this.entries = null;
+        this.shards = null;
+        this.generations = null;
+        this.evictor = null;
+    }
+
+    /**
+     * Creates a session cache from configuration of the form:
+     * <pre>
+     * "session-cache": {
+     *     "enabled": true,
+     *     "ttl": 60000,
+     *     "max_size": 10000,
+     *     "per_event_loop": true,
+     *     "shard_size": 1024
+     * }
+     * </pre>
+     * @param config Session cache configuration or <code>null</code> in which
+     * case the cache is disabled.
+     * @return See above.
+     */
+    public static SessionCache fromConfig(JsonObject config) {
+        if (config == null || !config.getBoolean("enabled", true)) {
+            return new SessionCache();
+        }
+        return new SessionCache(
+                config.getLong("ttl", 60000L),
+                config.getInteger("max_size", 10000),
+                config.getBoolean("per_event_loop", true)
+                    ? config.getInteger("shard_size", 1024) : 0);
+    }
+
+    private static FastThreadLocal<Map<String, CachedConnector>> newShards(
+            final int shardSize) {
+        return new FastThreadLocal<Map<String, CachedConnector>>() {
+            @Override
+            protected Map<String, CachedConnector> initialValue() {
+                return new LinkedHashMap<String, CachedConnector>(
+                        16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, CachedConnector> eldest) {
+                        return size() > shardSize;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return Whether or not the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The calling thread's shard or <code>null</code> if shards are
+     * disabled or the calling thread is not an event loop.
+     */
+    private Map<String, CachedConnector> shard() {
+        if (shards == null || !Context.isOnEventLoopThread()) {
+            return null;
+        }
+        return shards.get();
+    }
+
+    /**
+     * Retrieves a cached connector.
+     * @param sessionKey Django session key.
+     * @return The cached connector or <code>null</code> if there is none.
+     */
+    public IConnector get(String sessionKey) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.nanoTime();
+        Map<String, CachedConnector> shard = shard();
+        if (shard != null) {
+            CachedConnector entry = shard.get(sessionKey);
+            if (entry != null) {
+                if (entry.isValid(now)) {
+                    L1_HITS.inc();
+                    return entry.connector;
+                }
+                shard.remove(sessionKey);
+            }
+        }
+        CachedConnector entry = entries.get(sessionKey);
+        if (entry == null) {
+            MISSES.inc();
+            return null;
+        }
+        if (!entry.isValid(now)) {
+            if (entries.remove(sessionKey, entry)) {
+                entry.invalidated = true;
+            }
+            MISSES.inc();
+            return null;
+        }
+        if (shard != null) {
+            shard.put(sessionKey, entry);
+        }
+        L2_HITS.inc();
+        return entry.connector;
+    }
+
+    /**
+     * @param sessionKey Django session key.
+     * @return Index of the generation stripe of a session key.
+     */
+    private static int stripe(String sessionKey) {
+        int h = sessionKey.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Retrieves the invalidation generation of a session key, to be passed
+     * to {@link #put(String, IConnector, long)} once a lookup started after
+     * calling this method completes.
+     * @param sessionKey Django session key.
+     * @return See above.
+     */
+    public long version(String sessionKey) {
+        if (!enabled) {
+            return 0;
+        }
+        return generations.get(stripe(sessionKey));
+    }
+
+    /**
+     * Caches a connector, replacing any existing entry.
+     * @param sessionKey Django session key.
+     * @param connector Connector to cache.
+     */
+    public void put(String sessionKey, IConnector connector) {
+        put(sessionKey, connector, version(sessionKey));
+    }
+
+    /**
+     * Caches a connector, replacing any existing entry, unless the session
+     * key has been invalidated since <code>version</code> was retrieved.
+     * @param sessionKey Django session key.
+     * @param connector Connector to cache.
+     * @param version Generation returned by {@link #version(String)} before
+     * the connector was looked up.
+     */
+    public void put(String sessionKey, IConnector connector, long version) {
+        if (!enabled || connector == null) {
+            return;
+        }
+        int stripe = stripe(sessionKey);
+        if (generations.get(stripe) != version) {
+            return;
+        }
+        CachedConnector entry =
+                new CachedConnector(connector, System.nanoTime() + ttl);
+        CachedConnector previous = entries.put(sessionKey, entry);
+        if (previous != null) {
+            previous.invalidated = true;
+        }
+        // Invalidations advance the generation before removing entries, so
+        // one which raced with the put above has either already removed the
+        // entry or is detected here
+        if (generations.get(stripe) != version) {
+            if (entries.remove(sessionKey, entry)) {
+                entry.invalidated = true;
+            }
+            return;
+        }
+        if (previous == null) {
+            evictor.evict(sessionKey);
+        }
+        Map<String, CachedConnector> shard = shard();
+        if (shard != null) {
+            shard.put(sessionKey, entry);
+        }
+    }
+
+    /**
+     * Removes a connector from the second level and, lazily, from every
+     * event loop's shard.
+     * @param sessionKey Django session key.
+     */
+    @Override
+    public void invalidate(String sessionKey) {
+        if (!enabled) {
+            return;
+        }
+        generations.incrementAndGet(stripe(sessionKey));
+        CachedConnector entry = entries.remove(sessionKey);
+        if (entry != null) {
+            entry.invalidated = true;
+        }
+    }
+
+    /**
+     * Removes all connectors from the second level and, lazily, from every
+     * event loop's shard.
+     */
+    @Override
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        for (Map.Entry<String, CachedConnector> entry
+                : entries.entrySet()) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * Removes and invalidates a second level entry unless it has been
+     * concurrently replaced.
+     * @param candidate Entry to remove.
+     */
+    private void remove(Map.Entry<String, CachedConnector> candidate) {
+        CachedConnector entry = candidate.getValue();
+        if (entries.remove(candidate.getKey(), entry)) {
+            entry.invalidated = true;
+        }
+    }
+
+}
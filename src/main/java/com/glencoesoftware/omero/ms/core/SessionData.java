@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+/**
+ * Raw pickled OMERO.web session data, as stored by the Django cache
+ * session storage engine, along with when the session expires if the
+ * session store it was retrieved from knows.  Used to populate faster
+ * session stores from slower ones without outliving the session.
+ */
+public final class SessionData {
+
+    /** Raw pickled session data */
+    private final byte[] data;
+
+    /**
+     * {@link System#currentTimeMillis()} at which the session expires or
+     * <code>null</code> if unknown
+     */
+    private final Long expires;
+
+    /**
+     * Constructor.
+     * @param data Raw pickled session data.
+     * @param expires {@link System#currentTimeMillis()} at which the session
+     * expires or <code>null</code> if unknown.
+     */
+    public SessionData(byte[] data, Long expires) {
+        this.data = data;
+        this.expires = expires;
+    }
+
+    /**
+     * @return Raw pickled session data.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return {@link System#currentTimeMillis()} at which the session
+     * expires or <code>null</code> if unknown.
+     */
+    public Long getExpires() {
+        return expires;
+    }
+
+    /**
+     * @param maxTtl Maximum time to live in milliseconds.
+     * @param now {@link System#currentTimeMillis()}.
+     * @return Milliseconds the session data may be stored for, the lesser
+     * of <code>maxTtl</code> and the time until the session expires, which
+     * is <code>0</code> or less if it already has.
+     */
+    public long ttl(long maxTtl, long now) {
+        return expires == null ? maxTtl : Math.min(maxTtl, expires - now);
+    }
+
+}
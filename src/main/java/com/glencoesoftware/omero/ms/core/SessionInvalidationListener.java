@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+/**
+ * Notified by an {@link OmeroWebSessionStore} when OMERO.web sessions are
+ * removed so that locally cached connectors can be evicted.  Notifications
+ * may arrive on any thread.
+ */
+public interface SessionInvalidationListener {
+
+    /**
+     * Called when a session has been removed from the session store.
+     * @param sessionKey Django session key.
+     */
+    void invalidate(String sessionKey);
+
+    /**
+     * Called when removals may have been missed, for example while
+     * reconnecting to the session store, and all locally cached connectors
+     * should be considered stale.
+     */
+    void invalidateAll();
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Issues and verifies short lived, AES-GCM encrypted tokens embedding the
+ * OMERO session key and user identifier of a resolved OMERO.web session so
+ * that subsequent requests can be authenticated without a session store
+ * lookup.  Tokens are unpadded URL safe base64 of a version byte, a random
+ * nonce and the encrypted payload with its authentication tag; the OMERO
+ * session key is never exposed in the clear.  The Django session key the
+ * token was issued for is authenticated as associated data, so a token is
+ * only valid when presented alongside the same session cookie.
+ * <p>
+ * Tokens are verified without I/O and are therefore not revoked when the
+ * OMERO.web session is: a token remains valid for up to its time to live
+ * after logout or session expiry, for as long as the client still presents
+ * the Django session cookie with it.  Keep the time to live short.
+ */
+public class SessionToken {
+
+    /** Salt used to derive the encryption key from a configured secret */
+    public static final String KEY_SALT = "omero-ms-core.session-token";
+
+    /** Token format version */
+    private static final byte VERSION = 2;
+
+    /** Payload flag set if the user identifier is present */
+    private static final byte HAS_USER_ID = 1;
+
+    /** Cipher transformation */
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    /** Nonce length in bytes */
+    private static final int NONCE_LENGTH = 12;
+
+    /** Authentication tag length in bits */
+    private static final int TAG_LENGTH = 128;
+
+    /** Fixed size portion of the payload: flags, expiry, user */
+    private static final int HEADER_LENGTH = 1 + 8 + 8;
+
+    private static final Base64.Encoder ENCODER =
+            Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Encryption key */
+    private final SecretKeySpec key;
+
+    /** Token time to live in milliseconds */
+    private final long ttl;
+
+    /** Name of the cookie tokens are issued in and read from */
+    private final String cookieName;
+
+    /** Name of the request header tokens are read from */
+    private final String headerName;
+
+    /** Per thread cipher, avoiding a provider lookup per token */
+    private final ThreadLocal<Cipher> cipher;
+
+    /**
+     * Constructor.
+     * @param secret Secret the encryption key is derived from.
+     * @param ttl Token time to live in milliseconds.
+     * @param cookieName Name of the cookie tokens are issued in and read
+     * from.
+     * @param headerName Name of the request header tokens are read from.
+     */
+    public SessionToken(
+            String secret, long ttl, String cookieName, String headerName) {
+        try {
+            byte[] derived = MessageDigest.getInstance("SHA-256").digest(
+                    (KEY_SALT + secret).getBytes(StandardCharsets.UTF_8));
+            key = new SecretKeySpec(derived, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        this.ttl = ttl;
+        this.cookieName = cookieName;
+        this.headerName = headerName;
+        this.cipher = ThreadLocal.withInitial(() -> {
+            try {
+                return Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Creates a session token issuer from configuration of the form:
+     * <pre>
+     * "session-token": {
+     *     "enabled": true,
+     *     "secret": "...",
+     *     "ttl": 60000,
+     *     "cookie_name": "omero_ms_session_token",
+     *     "header_name": "X-OMERO-MS-Session-Token"
+     * }
+     * </pre>
+     * @param config Session token configuration or <code>null</code> in which
+     * case tokens are disabled.
+     * @param defaultSecret Secret to use if none is configured, usually the
+     * OMERO.web <code>secret_key</code>.
+     * @return See above or <code>null</code> if tokens are disabled.
+     */
+    public static SessionToken fromConfig(
+            JsonObject config, String defaultSecret) {
+        if (config == null || !config.getBoolean("enabled", true)) {
+            return null;
+        }
+        String secret = config.getString("secret", defaultSecret);
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Session tokens require a secret");
+        }
+        return new SessionToken(
+                secret,
+                config.getLong("ttl", 60000L),
+                config.getString("cookie_name", "omero_ms_session_token"),
+                config.getString(
+                        "header_name", "X-OMERO-MS-Session-Token"));
+    }
+
+    /**
+     * @return Token time to live in milliseconds.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return Name of the cookie tokens are issued in and read from.
+     */
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    /**
+     * @return Name of the request header tokens are read from.
+     */
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    /**
+     * Issues a token for a resolved session.
+     * @param djangoSessionKey Django session key the connector was resolved
+     * from.
+     * @param connector Resolved connector.
+     * @return See above.
+     */
+    public String issue(String djangoSessionKey, IConnector connector) {
+        return issue(djangoSessionKey, connector, System.currentTimeMillis());
+    }
+
+    String issue(String djangoSessionKey, IConnector connector, long now) {
+        byte[] omeroSessionKey = connector.getOmeroSessionKey()
+                .getBytes(StandardCharsets.UTF_8);
+        Long userId = connector.getUserId();
+        ByteBuffer payload =
+                ByteBuffer.allocate(HEADER_LENGTH + omeroSessionKey.length);
+        payload.put(userId == null ? 0 : HAS_USER_ID);
+        payload.putLong(now + ttl);
+        payload.putLong(userId == null ? 0L : userId);
+        payload.put(omeroSessionKey);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        byte[] token;
+        try {
+            Cipher cipher = init(Cipher.ENCRYPT_MODE, nonce, djangoSessionKey);
+            token = new byte[1 + NONCE_LENGTH
+                    + cipher.getOutputSize(payload.capacity())];
+            token[0] = VERSION;
+            System.arraycopy(nonce, 0, token, 1, NONCE_LENGTH);
+            cipher.doFinal(payload.array(), 0, payload.capacity(),
+                    token, 1 + NONCE_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        return ENCODER.encodeToString(token);
+    }
+
+    /**
+     * Verifies a token presented with a session cookie.
+     * @param token Token to verify.
+     * @param djangoSessionKey Django session key of the session cookie.
+     * @return A connector populated with the OMERO session key and user
+     * identifier from the token or <code>null</code> if the token is
+     * malformed, has been tampered with, was issued for another session or
+     * has expired.
+     */
+    public IConnector verify(String token, String djangoSessionKey) {
+        return verify(token, djangoSessionKey, System.currentTimeMillis());
+    }
+
+    IConnector verify(String token, String djangoSessionKey, long now) {
+        if (token == null || djangoSessionKey == null) {
+            return null;
+        }
+        byte[] decoded;
+        try {
+            decoded = DECODER.decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (decoded.length < 1 + NONCE_LENGTH + TAG_LENGTH / 8
+                + HEADER_LENGTH || decoded[0] != VERSION) {
+            return null;
+        }
+        byte[] payload;
+        try {
+            Cipher cipher = init(Cipher.DECRYPT_MODE,
+                    Arrays.copyOfRange(decoded, 1, 1 + NONCE_LENGTH),
+                    djangoSessionKey);
+            payload = cipher.doFinal(decoded, 1 + NONCE_LENGTH,
+                    decoded.length - 1 - NONCE_LENGTH);
+        } catch (AEADBadTagException e) {
+            return null;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte flags = buffer.get();
+        long expires = buffer.getLong();
+        long userId = buffer.getLong();
+        if (now >= expires) {
+            return null;
+        }
+        String omeroSessionKey = new String(
+                payload, HEADER_LENGTH, payload.length - HEADER_LENGTH,
+                StandardCharsets.UTF_8);
+        return new CompactConnector(
+                null, null, null, omeroSessionKey,
+                (flags & HAS_USER_ID) != 0 ? Long.valueOf(userId) : null);
+    }
+
+    private Cipher init(int mode, byte[] nonce, String djangoSessionKey)
+            throws GeneralSecurityException {
+        Cipher cipher = this.cipher.get();
+        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH, nonce));
+        cipher.updateAAD(djangoSessionKey.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+
+}
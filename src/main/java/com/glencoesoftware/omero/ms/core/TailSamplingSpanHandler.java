@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+
+import brave.Span.Kind;
+import brave.handler.FinishedSpanHandler;
+import brave.handler.MutableSpan;
+import brave.propagation.TraceContext;
+import io.prometheus.client.Counter;
+import io.vertx.core.json.JsonObject;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+
+/**
+ * Brave FinishedSpanHandler which buffers the spans of each trace for a
+ * short window and only forwards, to a Zipkin {@link Reporter}, traces
+ * whose root span exceeded a latency threshold or any of whose spans
+ * errored, plus a baseline fraction of all other traces.  The decision is
+ * made when the local root span, the first span of the trace in this
+ * process, finishes, and the latency threshold applies to the duration of
+ * that span alone; slow asynchronous work outliving the root, such as a
+ * cache write-back, does not make a trace slow.  Traces whose root never
+ * finishes within the window are decided on the spans buffered so far,
+ * using the longest of their durations in place of the root's.
+ * <p>
+ * The handler consumes every span it is given so it should be registered
+ * after any other handlers, such as {@link PrometheusSpanHandler}, and the
+ * <code>Tracing</code> span reporter should be <code>Reporter.NOOP</code>.
+ * As traces can only be kept if they are recorded, spans are recorded
+ * locally regardless of the head sampling decision.
+ */
+public class TailSamplingSpanHandler extends FinishedSpanHandler
+        implements Closeable {
+
+    private static final org.slf4j.Logger log =
+            LoggerFactory.getLogger(TailSamplingSpanHandler.class);
+
+    /** Traces by sampling decision */
+    private static final Counter TRACES = Counter.build()
+            .name("tailSamplingTraces")
+            .labelNames("decision")
+            .help("Traces by tail sampling decision")
+            .register();
+
+    private static final Counter.Child SLOW = TRACES.labels("slow");
+
+    private static final Counter.Child ERROR = TRACES.labels("error");
+
+    private static final Counter.Child BASELINE = TRACES.labels("baseline");
+
+    private static final Counter.Child DROPPED = TRACES.labels("dropped");
+
+    private static final Counter.Child OVERFLOW = TRACES.labels("overflow");
+
+    /** Finished span and its context */
+    private static final class FinishedSpan {
+
+        private final TraceContext context;
+
+        private final MutableSpan span;
+
+        private FinishedSpan(TraceContext context, MutableSpan span) {
+            this.context = context;
+            this.span = span;
+        }
+    }
+
+    /** Spans of a trace buffered until a decision is made */
+    private static final class TraceBuffer {
+
+        /** Trace identifier */
+        private final String traceId;
+
+        /** {@link System#nanoTime()} after which the trace is decided */
+        private final long expires;
+
+        /** Buffered spans, <code>null</code> once decided */
+        private List<FinishedSpan> spans = new ArrayList<FinishedSpan>();
+
+        /** Whether or not the trace is kept, once decided */
+        private boolean keep;
+
+        /** Whether or not any buffered span errored */
+        private boolean error;
+
+        /** Longest duration of any buffered span in microseconds */
+        private long maxDuration;
+
+        private TraceBuffer(String traceId, long expires) {
+            this.traceId = traceId;
+            this.expires = expires;
+        }
+    }
+
+    /** Decision of a trace, remembered for late spans */
+    private static final class Decision {
+
+        /** Whether or not the trace is kept */
+        private final boolean keep;
+
+        /** {@link System#nanoTime()} after which the decision is forgotten */
+        private final long expires;
+
+        private Decision(boolean keep, long expires) {
+            this.keep = keep;
+            this.expires = expires;
+        }
+    }
+
+    /** Buffer window in nanoseconds */
+    private final long window;
+
+    /** Root span latency above which traces are kept, in microseconds */
+    private final long latencyThreshold;
+
+    /** Fraction of other traces which are kept */
+    private final double baselineRate;
+
+    /** Maximum number of undecided traces buffered at once */
+    private final int maxTraces;
+
+    /** Reporter kept traces are forwarded to */
+    private final Reporter<Span> reporter;
+
+    /** Undecided traces by trace identifier */
+    private final ConcurrentHashMap<String, TraceBuffer> traces =
+            new ConcurrentHashMap<String, TraceBuffer>();
+
+    /**
+     * Recently decided traces by trace identifier, which do not count
+     * towards the maximum number of buffered traces
+     */
+    private final ConcurrentHashMap<String, Decision> decided =
+            new ConcurrentHashMap<String, Decision>();
+
+    /** Decides traces whose window has elapsed */
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Constructor.
+     * @param config Microservice wide configuration.  The sampling policy is
+     * read from <code>tail-sampling</code>:
+     * <pre>
+     * "tail-sampling": {
+     *     "window": 5000,
+     *     "latency_threshold": 1000,
+     *     "baseline_rate": 0.01,
+     *     "max_traces": 10000
+     * }
+     * </pre>
+     * The window and latency threshold are in milliseconds.
+     * @param reporter Reporter kept traces are forwarded to.
+     */
+    public TailSamplingSpanHandler(JsonObject config, Reporter<Span> reporter) {
+        JsonObject tailSampling =
+                config.getJsonObject("tail-sampling", new JsonObject());
+        this.window = TimeUnit.MILLISECONDS.toNanos(
+                tailSampling.getLong("window", 5000L));
+        this.latencyThreshold = TimeUnit.MILLISECONDS.toMicros(
+                tailSampling.getLong("latency_threshold", 1000L));
+        this.baselineRate = tailSampling.getDouble("baseline_rate", 0.01);
+        this.maxTraces = tailSampling.getInteger("max_traces", 10000);
+        this.reporter = reporter;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tail-sampling-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1L, window / 2);
+        sweeper.scheduleAtFixedRate(
+                this::sweep, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records spans whether or not they were sampled at the head so that
+     * slow or failed traces can be kept.
+     * @see FinishedSpanHandler#alwaysSampleLocal()
+     */
+    @Override
+    public boolean alwaysSampleLocal() {
+        return true;
+    }
+
+    /**
+     * Buffers the span until its trace is decided, or forwards or drops it
+     * immediately if it already has been.
+     * @return Always <code>false</code>; spans are reported by this handler.
+     */
+    @Override
+    public boolean handle(TraceContext context, MutableSpan span) {
+        String traceId = context.traceIdString();
+        TraceBuffer trace = traces.get(traceId);
+        if (trace == null) {
+            // Decisions are recorded before their buffer is removed
+            Decision decision = decided.get(traceId);
+            if (decision != null) {
+                // Late span of an already decided trace
+                if (decision.keep) {
+                    report(context, span);
+                }
+                return false;
+            }
+            if (traces.size() >= maxTraces) {
+                OVERFLOW.inc();
+                return false;
+            }
+            trace = traces.computeIfAbsent(traceId,
+                    k -> new TraceBuffer(k, System.nanoTime() + window));
+        }
+        boolean root = context.parentId() == null
+                || span.kind() == Kind.SERVER;
+        List<FinishedSpan> kept = null;
+        synchronized (trace) {
+            if (trace.spans == null) {
+                // Decided since it was looked up
+                if (trace.keep) {
+                    report(context, span);
+                }
+                return false;
+            }
+            trace.spans.add(new FinishedSpan(context, span));
+            trace.error |= span.error() != null || span.tag("error") != null;
+            long duration = span.finishTimestamp() - span.startTimestamp();
+            trace.maxDuration = Math.max(trace.maxDuration, duration);
+            if (root) {
+                kept = decide(trace, duration);
+            }
+        }
+        forward(kept);
+        return false;
+    }
+
+    /**
+     * Decides whether or not to keep a trace and moves it from the buffered
+     * to the decided traces.  Must be called while holding the trace's
+     * monitor.
+     * @param trace Trace to decide.
+     * @param duration Duration of the local root span in microseconds.
+     * @return The buffered spans of the trace if it is kept,
+     * <code>null</code> otherwise.
+     */
+    private List<FinishedSpan> decide(TraceBuffer trace, long duration) {
+        if (trace.error) {
+            ERROR.inc();
+            trace.keep = true;
+        } else if (duration >= latencyThreshold) {
+            SLOW.inc();
+            trace.keep = true;
+        } else if (ThreadLocalRandom.current().nextDouble() < baselineRate) {
+            BASELINE.inc();
+            trace.keep = true;
+        } else {
+            DROPPED.inc();
+        }
+        List<FinishedSpan> spans = trace.spans;
+        trace.spans = null;
+        decided.put(trace.traceId,
+                new Decision(trace.keep, System.nanoTime() + window));
+        traces.remove(trace.traceId, trace);
+        return trace.keep ? spans : null;
+    }
+
+    /**
+     * Decides traces whose window has elapsed and forgets traces which were
+     * decided more than a window ago.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        for (TraceBuffer trace : traces.values()) {
+            if (now - trace.expires < 0) {
+                continue;
+            }
+            List<FinishedSpan> kept = null;
+            synchronized (trace) {
+                if (trace.spans != null) {
+                    // The root never finished
+                    kept = decide(trace, trace.maxDuration);
+                }
+            }
+            forward(kept);
+        }
+        Iterator<Decision> iterator = decided.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().expires >= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Number of undecided traces currently buffered.
+     */
+    int getBufferedTraces() {
+        return traces.size();
+    }
+
+    private void forward(List<FinishedSpan> spans) {
+        if (spans == null) {
+            return;
+        }
+        for (FinishedSpan finished : spans) {
+            report(finished.context, finished.span);
+        }
+    }
+
+    private void report(TraceContext context, MutableSpan span) {
+        try {
+            reporter.report(convert(context, span));
+        } catch (Exception e) {
+            log.error("Failed to report span", e);
+        }
+    }
+
+    /**
+     * Converts a finished span to its Zipkin representation.
+     * @param context Trace context of the span.
+     * @param span Finished span.
+     * @return See above.
+     */
+    static Span convert(TraceContext context, MutableSpan span) {
+        Span.Builder builder = Span.newBuilder()
+                .traceId(context.traceIdString())
+                .id(context.spanId())
+                .name(span.name())
+                .timestamp(span.startTimestamp())
+                .duration(Math.max(
+                        1L, span.finishTimestamp() - span.startTimestamp()))
+                .debug(context.debug())
+                .shared(span.shared());
+        Long parentId = context.parentId();
+        if (parentId != null) {
+            builder.parentId(parentId);
+        }
+        if (span.kind() != null) {
+            builder.kind(Span.Kind.valueOf(span.kind().name()));
+        }
+        if (span.localServiceName() != null || span.localIp() != null) {
+            Endpoint.Builder local = Endpoint.newBuilder()
+                    .serviceName(span.localServiceName());
+            local.ip(span.localIp());
+            local.port(span.localPort());
+            builder.localEndpoint(local.build());
+        }
+        if (span.remoteServiceName() != null || span.remoteIp() != null) {
+            Endpoint.Builder remote = Endpoint.newBuilder()
+                    .serviceName(span.remoteServiceName());
+            remote.ip(span.remoteIp());
+            remote.port(span.remotePort());
+            builder.remoteEndpoint(remote.build());
+        }
+        span.forEachTag(Span.Builder::putTag, builder);
+        span.forEachAnnotation(Span.Builder::addAnnotation, builder);
+        Throwable error = span.error();
+        if (error != null && span.tag("error") == null) {
+            String message = error.getMessage();
+            builder.putTag("error", message != null
+                    ? message : error.getClass().getSimpleName());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Stops deciding traces; spans still buffered are dropped.
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        traces.clear();
+        decided.clear();
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.function.Supplier;
+
+/**
+ * Span created through {@link Traces}.  When tracing is disabled or the
+ * current trace is not recorded this is a shared no-op instance, so tags
+ * which are expensive to compute should be passed as a {@link Supplier} or
+ * guarded by {@link #isNoop()}.
+ */
+public interface TraceSpan {
+
+    /**
+     * @return Whether or not the span is a no-op which records nothing.
+     */
+    boolean isNoop();
+
+    /**
+     * Starts the span.  Only required for spans created with
+     * {@link Traces#nextSpan(String)}; scoped spans are already started.
+     * @return This span.
+     */
+    TraceSpan start();
+
+    /**
+     * Tags the span.
+     * @param key Tag key.
+     * @param value Tag value.
+     * @return This span.
+     */
+    TraceSpan tag(String key, String value);
+
+    /**
+     * Tags the span, only converting <code>value</code> to a string if the
+     * span is recorded.
+     * @param key Tag key.
+     * @param value Tag value.
+     * @return This span.
+     */
+    TraceSpan tag(String key, long value);
+
+    /**
+     * Tags the span, only computing <code>value</code> if the span is
+     * recorded.
+     * @param key Tag key.
+     * @param value Computes the tag value.
+     * @return This span.
+     */
+    TraceSpan tag(String key, Supplier<String> value);
+
+    /**
+     * Records an error on the span.
+     * @param throwable Error.
+     * @return This span.
+     */
+    TraceSpan error(Throwable throwable);
+
+    /**
+     * Finishes the span, closing its scope if it is scoped.  Must be called
+     * exactly once.
+     */
+    void finish();
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.function.Supplier;
+
+import brave.ScopedSpan;
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.TraceContext;
+
+/**
+ * Tracing facade for the core's own spans.  Unlike calling
+ * <code>Tracing.currentTracer()</code> directly it works when no
+ * <code>Tracing</code> has been configured, and when tracing is disabled or
+ * the current trace is neither sampled nor recorded locally it returns a
+ * shared no-op {@link TraceSpan} without allocating a span, a scope or any
+ * tag values.
+ */
+public final class Traces {
+
+    /** Shared span used whenever nothing is recorded */
+    static final TraceSpan NOOP = new TraceSpan() {
+
+        @Override
+        public boolean isNoop() {
+            return true;
+        }
+
+        @Override
+        public TraceSpan start() {
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, String value) {
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, long value) {
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, Supplier<String> value) {
+            return this;
+        }
+
+        @Override
+        public TraceSpan error(Throwable throwable) {
+            return this;
+        }
+
+        @Override
+        public void finish() {
+        }
+    };
+
+    /** Span in scope until finished */
+    private static final class Scoped implements TraceSpan {
+
+        private final ScopedSpan span;
+
+        private Scoped(ScopedSpan span) {
+            this.span = span;
+        }
+
+        @Override
+        public boolean isNoop() {
+            return span.isNoop();
+        }
+
+        @Override
+        public TraceSpan start() {
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, String value) {
+            span.tag(key, value);
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, long value) {
+            if (!span.isNoop()) {
+                span.tag(key, String.valueOf(value));
+            }
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, Supplier<String> value) {
+            if (!span.isNoop()) {
+                span.tag(key, value.get());
+            }
+            return this;
+        }
+
+        @Override
+        public TraceSpan error(Throwable throwable) {
+            span.error(throwable);
+            return this;
+        }
+
+        @Override
+        public void finish() {
+            span.finish();
+        }
+    }
+
+    /** Span which is never placed in scope */
+    private static final class Unscoped implements TraceSpan {
+
+        private final Span span;
+
+        private Unscoped(Span span) {
+            this.span = span;
+        }
+
+        @Override
+        public boolean isNoop() {
+            return span.isNoop();
+        }
+
+        @Override
+        public TraceSpan start() {
+            span.start();
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, String value) {
+            span.tag(key, value);
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, long value) {
+            if (!span.isNoop()) {
+                span.tag(key, String.valueOf(value));
+            }
+            return this;
+        }
+
+        @Override
+        public TraceSpan tag(String key, Supplier<String> value) {
+            if (!span.isNoop()) {
+                span.tag(key, value.get());
+            }
+            return this;
+        }
+
+        @Override
+        public TraceSpan error(Throwable throwable) {
+            span.error(throwable);
+            return this;
+        }
+
+        @Override
+        public void finish() {
+            span.finish();
+        }
+    }
+
+    private Traces() {
+    }
+
+    /**
+     * @return The current tracer or <code>null</code> if tracing is not
+     * configured or the current trace is neither sampled nor recorded
+     * locally, in which case no child span would be recorded either.
+     */
+    private static Tracer recordingTracer() {
+        Tracing tracing = Tracing.current();
+        if (tracing == null) {
+            return null;
+        }
+        TraceContext context = tracing.currentTraceContext().get();
+        if (context != null && Boolean.FALSE.equals(context.sampled())
+                && !context.sampledLocal()) {
+            return null;
+        }
+        return tracing.tracer();
+    }
+
+    /**
+     * Starts a span which is a child of the current span, if any, and is
+     * placed in scope until it is finished.
+     * @param name Span name.
+     * @return See above.
+     */
+    public static TraceSpan startScopedSpan(String name) {
+        Tracer tracer = recordingTracer();
+        if (tracer == null) {
+            return NOOP;
+        }
+        return new Scoped(tracer.startScopedSpan(name));
+    }
+
+    /**
+     * Creates, but does not start, a span which is a child of the current
+     * span, if any, and is never placed in scope.  Useful for work which
+     * happens after the enclosing span may have finished.
+     * @param name Span name.
+     * @return See above.
+     */
+    public static TraceSpan nextSpan(String name) {
+        Tracer tracer = recordingTracer();
+        if (tracer == null) {
+            return NOOP;
+        }
+        return new Unscoped(tracer.nextSpan().name(name));
+    }
+
+    /**
+     * @return The context of the current span or <code>null</code> if there
+     * is none or tracing is not configured.
+     */
+    public static TraceContext currentContext() {
+        Tracing tracing = Tracing.current();
+        return tracing == null ? null : tracing.currentTraceContext().get();
+    }
+
+}
@@ -25,19 +25,36 @@ import io.vertx.core.net.SocketAddress;
  * <code>release-5.6.8</code>.  That implementation is package private so
  * cannot be used by us unless we bring the entire thing in.
  *
- * Why use a thread local for the http route when parsing {@linkplain HttpServerResponse}?</h3>
+ * <h3>Why use a composite type for the http route when parsing {@linkplain HttpServerResponse}?</h3>
  *
- * <p>When parsing the response, we use a thread local to make the current route's path visible.
- * This is an alternative to wrapping {@linkplain HttpServerResponse} or declaring a custom type. We
- * don't wrap {@linkplain HttpServerResponse}, because this would lock the instrumentation to the
- * signatures currently present on it (for example, if a method is added, we'd have to recompile).
- * If a wrapper is eventually provided by vertx, we could use that, but it didn't exist at the time.
- * We could also define a custom composite type like ResponseWithTemplate. However, this would
- * interfere with people using "instanceof" in http samplers or parsers: they'd have to depend on a
- * brave type. The least impact means was to use a thread local, as eventhough this costs a little,
- * it prevents revision lock or routine use of custom types.
+ * <p>Upstream uses a thread local set around {@code handleSend} to make the current route's path
+ * visible when parsing the response. That leaks state if an exception path skips cleanup and breaks
+ * as soon as the response is parsed on a thread other than the one which set it. Instead the method
+ * and route are carried with the response in a {@link Response} created once per request.
+ *
+ * <p>This is the trade-off upstream avoided: the {@code HttpServerParser} configured on the
+ * {@code HttpTracing} passed to {@link OmeroHttpTracingHandler}, including a user supplied one, now
+ * receives a {@link Response} rather than an {@linkplain HttpServerResponse} when parsing the
+ * response. Parsers must read the status code, method and route through the adapter they are given
+ * rather than by casting the response, and can no longer reach the underlying
+ * {@linkplain HttpServerResponse}. Samplers only see requests so are unaffected. Per request
+ * overhead is unchanged within measurement error, see {@code HttpTracingBenchmark}.
  */
-class VertxHttpServerAdapter extends HttpServerAdapter<HttpServerRequest, HttpServerResponse> {
+class VertxHttpServerAdapter
+        extends HttpServerAdapter<HttpServerRequest, VertxHttpServerAdapter.Response> {
+
+  /** A response along with the method and route of the request it answers. */
+  static final class Response {
+    final HttpServerResponse response;
+    @Nullable final String method;
+    @Nullable final String route;
+
+    Response(HttpServerResponse response, String method, String route) {
+      this.response = response;
+      this.method = method;
+      this.route = route;
+    }
+  }
 
   @Override public String method(HttpServerRequest request) {
     return request.method().name();
@@ -55,24 +72,21 @@ class VertxHttpServerAdapter extends HttpServerAdapter<HttpServerRequest, HttpSe
     return request.headers().get(name);
   }
 
-  @Override public String methodFromResponse(HttpServerResponse ignored) {
-    String[] methodAndPath = METHOD_AND_PATH.get();
-    return methodAndPath != null ? methodAndPath[0] : null;
+  @Override public String methodFromResponse(Response response) {
+    return response.method;
   }
 
-  @Override public String route(HttpServerResponse ignored) {
-    String[] methodAndPath = METHOD_AND_PATH.get();
-    String result = methodAndPath != null ? methodAndPath[1] : null;
-    return result != null ? result : "";
+  @Override public String route(Response response) {
+    return response.route != null ? response.route : "";
   }
 
-  @Override @Nullable public Integer statusCode(HttpServerResponse response) {
+  @Override @Nullable public Integer statusCode(Response response) {
     int result = statusCodeAsInt(response);
     return result != 0 ? result : null;
   }
 
-  @Override public int statusCodeAsInt(HttpServerResponse response) {
-    return response.getStatusCode();
+  @Override public int statusCodeAsInt(Response response) {
+    return response.response.getStatusCode();
   }
 
   /**
@@ -84,20 +98,4 @@ class VertxHttpServerAdapter extends HttpServerAdapter<HttpServerRequest, HttpSe
     SocketAddress addr = req.remoteAddress();
     return span.remoteIpAndPort(addr.host(), addr.port());
   }
-
-  /**
-   * This uses a string array to avoid leaking a Brave type onto a thread local. If we used a Brave
-   * type, it would prevent unloading Brave classes.
-   */
-  static final ThreadLocal<String[]> METHOD_AND_PATH = new ThreadLocal<>();
-
-  static void setCurrentMethodAndPath(String method, String path) {
-    String[] methodAndPath = METHOD_AND_PATH.get();
-    if (methodAndPath == null) {
-      methodAndPath = new String[2];
-      METHOD_AND_PATH.set(methodAndPath);
-    }
-    methodAndPath[0] = method;
-    methodAndPath[1] = path;
-  }
 }
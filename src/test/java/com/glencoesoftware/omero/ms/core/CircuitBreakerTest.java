@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.glencoesoftware.omero.ms.core.CircuitBreaker.State;
+
+import io.prometheus.client.CollectorRegistry;
+import io.vertx.core.json.JsonObject;
+
+
+public class CircuitBreakerTest {
+
+    private static void open(CircuitBreaker circuitBreaker, int failures) {
+        for (int i = 0; i < failures; i++) {
+            Assert.assertTrue(circuitBreaker.allowRequest());
+            circuitBreaker.onFailure();
+        }
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker circuitBreaker =
+                new CircuitBreaker("test_open", 3, 60000L, 1);
+        open(circuitBreaker, 2);
+        // A success resets the consecutive failure count
+        Assert.assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.onSuccess();
+        open(circuitBreaker, 2);
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+        open(circuitBreaker, 1);
+        Assert.assertEquals(circuitBreaker.getState(), State.OPEN);
+        Assert.assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenProbeCloses() throws Exception {
+        CircuitBreaker circuitBreaker =
+                new CircuitBreaker("test_close", 1, 50L, 1);
+        open(circuitBreaker, 1);
+        Assert.assertFalse(circuitBreaker.allowRequest());
+        Thread.sleep(100L);
+        Assert.assertTrue(circuitBreaker.allowRequest());
+        Assert.assertEquals(circuitBreaker.getState(), State.HALF_OPEN);
+        // Only one probe at a time
+        Assert.assertFalse(circuitBreaker.allowRequest());
+        circuitBreaker.onSuccess();
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+        Assert.assertTrue(circuitBreaker.allowRequest());
+        Assert.assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenProbeReopens() throws Exception {
+        CircuitBreaker circuitBreaker =
+                new CircuitBreaker("test_reopen", 1, 50L, 2);
+        open(circuitBreaker, 1);
+        Thread.sleep(100L);
+        Assert.assertTrue(circuitBreaker.allowRequest());
+        Assert.assertTrue(circuitBreaker.allowRequest());
+        Assert.assertFalse(circuitBreaker.allowRequest());
+        circuitBreaker.onFailure();
+        Assert.assertEquals(circuitBreaker.getState(), State.OPEN);
+        Assert.assertFalse(circuitBreaker.allowRequest());
+        // Probe slots are released on reopening
+        Thread.sleep(100L);
+        Assert.assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.onSuccess();
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+    }
+
+    @Test
+    public void testMetrics() {
+        CircuitBreaker circuitBreaker =
+                new CircuitBreaker("test_metrics", 1, 60000L, 1);
+        open(circuitBreaker, 1);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertFalse(circuitBreaker.allowRequest());
+        }
+        CollectorRegistry registry = CollectorRegistry.defaultRegistry;
+        Assert.assertEquals(registry.getSampleValue(
+                "circuitBreakerRejected_total",
+                new String[] { "name" }, new String[] { "test_metrics" }),
+                3.0);
+        Assert.assertEquals(registry.getSampleValue(
+                "circuitBreakerTransitions_total",
+                new String[] { "name", "state" },
+                new String[] { "test_metrics", "OPEN" }),
+                1.0);
+        Assert.assertEquals(registry.getSampleValue(
+                "circuitBreakerState",
+                new String[] { "name" }, new String[] { "test_metrics" }),
+                (double) State.OPEN.ordinal());
+    }
+
+    @Test
+    public void testDisabled() {
+        CircuitBreaker circuitBreaker =
+                CircuitBreaker.fromConfig("test_disabled", null);
+        open(circuitBreaker, 100);
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+        circuitBreaker = CircuitBreaker.fromConfig("test_disabled_config",
+                new JsonObject().put("enabled", false));
+        open(circuitBreaker, 100);
+        Assert.assertEquals(circuitBreaker.getState(), State.CLOSED);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidConfiguration() {
+        new CircuitBreaker("test_invalid", 0, 1000L, 1);
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+public class ConnectorDecodeCacheTest {
+
+    private static final String SESSION =
+        "gASVcwAAAAAAAAB9lCiMBmJhbmFuYZRLFowJY29ubmVjdG9ylH2UKIwJc2VydmVy"
+        + "X2lklIwBMZSMCWlzX3NlY3VyZZSJjAd1c2VyX2lklEsLjBFvbWVyb19zZXNzaW9u"
+        + "X2tleZSMBmFiYzEyM5SMCWlzX3B1YmxpY5SJdXUu";
+
+    private AtomicInteger decoded;
+
+    private Function<byte[], IConnector> decoder;
+
+    @BeforeMethod
+    public void setUp() {
+        decoded = new AtomicInteger();
+        decoder = data -> {
+            decoded.incrementAndGet();
+            return new PickledSessionConnector(data);
+        };
+    }
+
+    @Test
+    public void testHit() {
+        ConnectorDecodeCache cache = new ConnectorDecodeCache("test", 16);
+        byte[] data = Base64.getDecoder().decode(SESSION);
+        IConnector first = cache.get(data, decoder);
+        // Identical content in a different array
+        IConnector second = cache.get(data.clone(), decoder);
+        Assert.assertSame(second, first);
+        Assert.assertEquals(decoded.get(), 1);
+        Assert.assertEquals(first.getOmeroSessionKey(), "abc123");
+        Assert.assertEquals(first.getUserId(), Long.valueOf(11L));
+    }
+
+    @Test
+    public void testDifferentContent() {
+        ConnectorDecodeCache cache = new ConnectorDecodeCache("test", 1);
+        byte[] data = Base64.getDecoder().decode(SESSION);
+        IConnector first = cache.get(data, decoder);
+        // Same length, different session key
+        byte[] changed = data.clone();
+        int offset = new String(changed, StandardCharsets.ISO_8859_1).indexOf("abc123");
+        changed[offset] = 'x';
+        IConnector second = cache.get(changed, decoder);
+        Assert.assertEquals(decoded.get(), 2);
+        Assert.assertNotSame(second, first);
+        Assert.assertEquals(second.getOmeroSessionKey(), "xbc123");
+        // Single slot, the original entry has been replaced
+        cache.get(data, decoder);
+        Assert.assertEquals(decoded.get(), 3);
+    }
+
+    @Test
+    public void testDisabled() {
+        ConnectorDecodeCache cache = new ConnectorDecodeCache("test", 0);
+        byte[] data = Base64.getDecoder().decode(SESSION);
+        cache.get(data, decoder);
+        cache.get(data, decoder);
+        Assert.assertEquals(decoded.get(), 2);
+    }
+
+    @Test
+    public void testDecodeFailureNotCached() {
+        ConnectorDecodeCache cache = new ConnectorDecodeCache("test", 16);
+        byte[] data = Base64.getDecoder().decode(SESSION);
+        try {
+            cache.get(data, d -> {
+                throw new IllegalArgumentException();
+            });
+            Assert.fail("Decoder exception not propagated");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        cache.get(data, decoder);
+        Assert.assertEquals(decoded.get(), 1);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+
+public class HttpRouteSamplerTest {
+
+    @Test
+    public void testDeferred() {
+        HttpRouteSampler sampler = new HttpRouteSampler(null, null);
+        sampler.setLimit("GET", "/tile", 1);
+        Assert.assertNull(sampler.trySample("GET", "/metadata"));
+        Assert.assertNull(sampler.trySample("POST", "/tile"));
+        Assert.assertNotNull(sampler.trySample("GET", "/tile"));
+    }
+
+    @Test
+    public void testRateLimited() {
+        HttpRouteSampler sampler = new HttpRouteSampler(null, null);
+        sampler.setLimit("GET", "/tile", 2);
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sampler.trySample("GET", "/tile")) {
+                sampled++;
+            }
+        }
+        // Up to one second's worth of traces in a burst
+        Assert.assertEquals(sampled, 2);
+    }
+
+    @Test
+    public void testNeverSampled() {
+        HttpRouteSampler sampler = new HttpRouteSampler(0.0, null);
+        Assert.assertFalse(sampler.trySample("GET", "/tile"));
+    }
+
+    @Test
+    public void testFromConfig() {
+        HttpRouteSampler sampler = HttpRouteSampler.fromConfig(
+                new JsonObject()
+                    .put("traces_per_second", 100.0)
+                    .put("routes", new JsonArray().add(new JsonObject()
+                        .put("method", "GET")
+                        .put("path", "/tile")
+                        .put("traces_per_second", 0.0))));
+        Assert.assertFalse(sampler.trySample("GET", "/tile"));
+        Assert.assertTrue(sampler.trySample("GET", "/metadata"));
+        Assert.assertNull(HttpRouteSampler.fromConfig(null));
+    }
+
+    @Test
+    public void testAdaptive() {
+        HttpRouteSampler sampler = new HttpRouteSampler(null, 10.0);
+        for (int i = 0; i < 1000; i++) {
+            sampler.trySample("GET", "/tile");
+        }
+        sampler.trySample("GET", "/metadata");
+        sampler.adjust(TimeUnit.SECONDS.toNanos(1));
+        // The rare route is traced fully and the hot route gets the rest
+        Assert.assertEquals(
+                sampler.getRate("GET", "/metadata"), 1.0, 0.01);
+        Assert.assertEquals(sampler.getRate("GET", "/tile"), 9.0, 0.01);
+    }
+
+    @Test
+    public void testAdaptiveLimits() {
+        HttpRouteSampler sampler = new HttpRouteSampler(null, 10.0);
+        sampler.setLimit("GET", "/tile", 0);
+        sampler.setLimit("GET", "/metadata", 0.5);
+        sampler.trySample("GET", "/tile");
+        sampler.trySample("GET", "/metadata");
+        sampler.adjust(TimeUnit.SECONDS.toNanos(1));
+        // Idle routes are not raised above their configured limits
+        Assert.assertEquals(sampler.getRate("GET", "/tile"), 0.0);
+        Assert.assertFalse(sampler.trySample("GET", "/tile"));
+        Assert.assertEquals(
+                sampler.getRate("GET", "/metadata"), 0.5, 0.01);
+    }
+
+    @Test
+    public void testAdaptiveWithinBudget() {
+        HttpRouteSampler sampler = new HttpRouteSampler(null, 10.0);
+        for (int i = 0; i < 100; i++) {
+            sampler.trySample("GET", "/route/" + i);
+        }
+        sampler.adjust(TimeUnit.SECONDS.toNanos(1));
+        // Only one route busy, the idle routes still each allowed a little
+        for (int i = 0; i < 1000; i++) {
+            sampler.trySample("GET", "/busy");
+        }
+        sampler.adjust(TimeUnit.SECONDS.toNanos(1));
+        double total = sampler.getRate("GET", "/busy");
+        for (int i = 0; i < 100; i++) {
+            total += sampler.getRate("GET", "/route/" + i);
+        }
+        Assert.assertTrue(total <= 10.0 + 0.01, String.valueOf(total));
+    }
+
+}
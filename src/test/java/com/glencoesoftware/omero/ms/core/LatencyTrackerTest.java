@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class LatencyTrackerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testInitialValue() {
+        LatencyTracker latencyTracker =
+                new LatencyTracker(100, 0.95, 10 * MS, MS, 100 * MS);
+        Assert.assertEquals(latencyTracker.get(), 10 * MS);
+        // Not recomputed until a full window has been recorded
+        for (int i = 0; i < 99; i++) {
+            latencyTracker.record(50 * MS);
+        }
+        Assert.assertEquals(latencyTracker.get(), 10 * MS);
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyTracker latencyTracker =
+                new LatencyTracker(100, 0.95, 10 * MS, MS, 100 * MS);
+        for (int i = 0; i < 94; i++) {
+            latencyTracker.record(2 * MS);
+        }
+        for (int i = 0; i < 6; i++) {
+            latencyTracker.record(40 * MS);
+        }
+        // Resolved to the upper bound of the containing bucket
+        Assert.assertTrue(latencyTracker.get() >= 40 * MS);
+        Assert.assertTrue(latencyTracker.get() < 44 * MS);
+
+        // Each window only reflects its own samples
+        for (int i = 0; i < 100; i++) {
+            latencyTracker.record(2 * MS);
+        }
+        Assert.assertTrue(latencyTracker.get() >= 2 * MS);
+        Assert.assertTrue(latencyTracker.get() < 2200000L);
+    }
+
+    @Test
+    public void testClamped() {
+        LatencyTracker latencyTracker =
+                new LatencyTracker(10, 0.5, 0L, MS, 100 * MS);
+        Assert.assertEquals(latencyTracker.get(), MS);
+        for (int i = 0; i < 10; i++) {
+            latencyTracker.record(TimeUnit.SECONDS.toNanos(10));
+        }
+        Assert.assertEquals(latencyTracker.get(), 100 * MS);
+        for (int i = 0; i < 10; i++) {
+            latencyTracker.record(0L);
+        }
+        Assert.assertTrue(latencyTracker.get() >= MS);
+        Assert.assertTrue(latencyTracker.get() < 2 * MS);
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import zipkin2.Span;
+
+
+public class LogSpanReporterTest {
+
+    private static Span span(int i) {
+        return Span.newBuilder()
+                .traceId("1").id(Integer.toHexString(i + 1)).name("test")
+                .build();
+    }
+
+    @Test
+    public void testFlushDrains() {
+        LogSpanReporter reporter = new LogSpanReporter(1024, 16, 60000);
+        for (int i = 0; i < 100; i++) {
+            reporter.report(span(i));
+        }
+        reporter.flush();
+        Assert.assertEquals(reporter.getQueueDepth(), 0);
+        reporter.close();
+    }
+
+    @Test
+    public void testBounded() {
+        LogSpanReporter reporter = new LogSpanReporter(4, 16, 60000);
+        for (int i = 0; i < 100; i++) {
+            reporter.report(span(i));
+        }
+        Assert.assertTrue(reporter.getQueueDepth() <= 4);
+        reporter.close();
+        Assert.assertEquals(reporter.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void testClosed() {
+        LogSpanReporter reporter = new LogSpanReporter(1024, 16, 60000);
+        reporter.close();
+        reporter.report(span(0));
+        Assert.assertEquals(reporter.getQueueDepth(), 0);
+        // Flushing a closed reporter must not block
+        reporter.flush();
+    }
+
+}
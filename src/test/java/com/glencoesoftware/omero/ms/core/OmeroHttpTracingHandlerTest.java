@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.glencoesoftware.omero.ms.core.OmeroHttpTracingHandler.Tag;
+
+import brave.Tracing;
+import brave.handler.FinishedSpanHandler;
+import brave.handler.MutableSpan;
+import brave.http.HttpTracing;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+import zipkin2.reporter.Reporter;
+
+
+public class OmeroHttpTracingHandlerTest {
+
+    private final List<MutableSpan> finished =
+            new CopyOnWriteArrayList<MutableSpan>();
+
+    private Vertx vertx;
+
+    private HttpClient client;
+
+    private Tracing tracing;
+
+    @BeforeMethod
+    public void setUp() {
+        vertx = Vertx.vertx();
+        client = vertx.createHttpClient();
+        tracing = tracing(Sampler.ALWAYS_SAMPLE, false);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        finished.clear();
+        tracing.close();
+        await(vertx.close());
+    }
+
+    private Tracing tracing(Sampler sampler, boolean alwaysSampleLocal) {
+        return Tracing.newBuilder()
+                .sampler(sampler)
+                .spanReporter(Reporter.NOOP)
+                .addFinishedSpanHandler(new FinishedSpanHandler() {
+                    @Override
+                    public boolean handle(
+                            TraceContext context, MutableSpan span) {
+                        finished.add(span);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean alwaysSampleLocal() {
+                        return alwaysSampleLocal;
+                    }
+                })
+                .build();
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture()
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private int listen(Router router) throws Exception {
+        return await(vertx.createHttpServer().requestHandler(router).listen(0))
+                .actualPort();
+    }
+
+    private int get(int port, String uri) throws Exception {
+        return await(client.request(HttpMethod.GET, port, "localhost", uri)
+                .compose(request -> request.putHeader("X-Test", "header")
+                        .send())
+                .compose(response -> response.body()
+                        .map(body -> response.statusCode())));
+    }
+
+    private List<String> paths() {
+        List<String> paths = new ArrayList<String>();
+        for (MutableSpan span : finished) {
+            paths.add(span.tag("http.path"));
+        }
+        return paths;
+    }
+
+    @Test
+    public void testRouteSampling() throws Exception {
+        HttpRouteSampler sampler = new HttpRouteSampler(100.0, null);
+        sampler.setLimit("GET", "/tile/:imageId", 0);
+        sampler.setLimit("GET", "/thumbnail/([0-9]+)", 0);
+        OmeroHttpTracingHandler handler = new OmeroHttpTracingHandler(
+                HttpTracing.create(tracing), null, sampler);
+        Router router = Router.router(vertx);
+        // Added to each route so that decisions are keyed on its path
+        router.post("/tile/:imageId").handler(handler).handler(
+                context -> context.response().end());
+        router.get("/tile/:imageId").handler(handler).handler(
+                context -> context.response().end());
+        router.get("/metadata/:imageId").handler(handler).handler(
+                context -> context.response().end());
+        router.getWithRegex("/thumbnail/([0-9]+)").handler(handler).handler(
+                context -> context.response().end());
+        router.route().handler(handler);
+        int port = listen(router);
+
+        Assert.assertEquals(get(port, "/tile/1"), 200);
+        Assert.assertEquals(get(port, "/thumbnail/1"), 200);
+        Assert.assertEquals(get(port, "/metadata/1"), 200);
+        Assert.assertEquals(get(port, "/unknown"), 404);
+        // Only the tile and thumbnail routes are never sampled
+        Assert.assertEquals(finished.size(), 2);
+        Assert.assertEquals(paths().get(0), "/metadata/1");
+        Assert.assertEquals(paths().get(1), "/unknown");
+        Assert.assertNotNull(sampler.getRoute("GET", "/tile/:imageId"));
+        Assert.assertNotNull(sampler.getRoute("GET", "/thumbnail/([0-9]+)"));
+        Assert.assertNotNull(sampler.getRoute("GET", "/metadata/:imageId"));
+        Assert.assertNotNull(sampler.getRoute("GET", ""));
+        Assert.assertNull(sampler.getRoute("POST", "/tile/:imageId"));
+    }
+
+    /**
+     * @param handler Tracing handler.
+     * @return Port of a server tracing a single route.
+     */
+    private int listen(OmeroHttpTracingHandler handler) throws Exception {
+        Router router = Router.router(vertx);
+        router.route().handler(handler);
+        router.get("/tile/:imageId").handler(context -> {
+            context.put("omero.session_key", "abc123");
+            context.put("header:X-Test", "context");
+            context.put("throws", new Object() {
+                @Override
+                public String toString() {
+                    throw new IllegalStateException("Failed");
+                }
+            });
+            context.response().end();
+        });
+        return listen(router);
+    }
+
+    @Test
+    public void testTags() throws Exception {
+        int port = listen(new OmeroHttpTracingHandler(
+                HttpTracing.create(tracing),
+                Arrays.asList(
+                    Tag.context("throws"),
+                    Tag.context("omero.session_key"),
+                    Tag.header("X-Test"),
+                    Tag.pathParam("imageId"),
+                    Tag.route(),
+                    Tag.context("missing")),
+                null, false));
+        Assert.assertEquals(get(port, "/tile/1"), 200);
+        // A failing tag neither prevents others nor finishing the span
+        Assert.assertEquals(finished.size(), 1);
+        MutableSpan span = finished.get(0);
+        Assert.assertNull(span.tag("throws"));
+        Assert.assertEquals(span.tag("omero.session_key"), "abc123");
+        Assert.assertEquals(span.tag("X-Test"), "header");
+        Assert.assertEquals(span.tag("imageId"), "1");
+        Assert.assertEquals(span.tag("http.route"), "/tile/:imageId");
+        Assert.assertNull(span.tag("missing"));
+    }
+
+    @Test
+    public void testContextKeys() throws Exception {
+        // Keys are never reinterpreted as headers, parameters or the route
+        int port = listen(new OmeroHttpTracingHandler(
+                HttpTracing.create(tracing),
+                Arrays.asList("header:X-Test", "route")));
+        Assert.assertEquals(get(port, "/tile/1"), 200);
+        Assert.assertEquals(finished.size(), 1);
+        Assert.assertEquals(finished.get(0).tag("header:X-Test"), "context");
+        Assert.assertNull(finished.get(0).tag("route"));
+        Assert.assertNull(finished.get(0).tag("http.route"));
+    }
+
+    @Test
+    public void testParse() {
+        Tag tag = Tag.parse("header:X-Test");
+        Assert.assertEquals(tag.source, Tag.HEADER);
+        Assert.assertEquals(tag.name, "X-Test");
+        tag = Tag.parse("param:imageId");
+        Assert.assertEquals(tag.source, Tag.PATH_PARAM);
+        Assert.assertEquals(tag.name, "imageId");
+        tag = Tag.parse("route");
+        Assert.assertEquals(tag.source, Tag.ROUTE);
+        Assert.assertEquals(tag.name, "http.route");
+        tag = Tag.parse("context:route");
+        Assert.assertEquals(tag.source, Tag.CONTEXT);
+        Assert.assertEquals(tag.name, "route");
+        tag = Tag.parse("omero.session_key");
+        Assert.assertEquals(tag.source, Tag.CONTEXT);
+        Assert.assertEquals(tag.name, "omero.session_key");
+    }
+
+    @Test
+    public void testSkipUnsampled() throws Exception {
+        tracing.close();
+        // Recorded locally, as for tail sampling, but never sampled
+        tracing = tracing(Sampler.NEVER_SAMPLE, true);
+        List<Tag> tags = Arrays.asList(Tag.context("omero.session_key"));
+        int port = listen(new OmeroHttpTracingHandler(
+                HttpTracing.create(tracing), tags, null, true));
+        Assert.assertEquals(get(port, "/tile/1"), 200);
+        Assert.assertEquals(finished.size(), 1);
+        Assert.assertNull(finished.get(0).tag("omero.session_key"));
+
+        finished.clear();
+        port = listen(new OmeroHttpTracingHandler(
+                HttpTracing.create(tracing), tags, null, false));
+        Assert.assertEquals(get(port, "/tile/1"), 200);
+        Assert.assertEquals(finished.size(), 1);
+        Assert.assertEquals(
+                finished.get(0).tag("omero.session_key"), "abc123");
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.glencoesoftware.omero.ms.core.OmeroWebRedisSessionStore.InvalidationSubscriber;
+
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+
+
+public class OmeroWebRedisSessionStoreTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeClass
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Creates a latency tracker with a fixed delay.
+     * @param millis Delay in milliseconds.
+     */
+    private static LatencyTracker fixedDelay(long millis) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        return new LatencyTracker(16, 0.95, nanos, nanos, nanos);
+    }
+
+    @DataProvider(name = "session keys")
+    public Object[][] sessionKeys() {
+        return new Object[][] {
+            {"", 1, "9hk4nj6ed5vy3bp8dtx31kgwewlvn5lc"},
+            {"omeroweb", 2, "9hk4nj6ed5vy3bp8dtx31kgwewlvn5lc"},
+            {"", 1, ""},
+            {"prefix", 10, "caf\u00e9"}
+        };
+    }
+
+    @Test(dataProvider = "session keys")
+    public void testSessionKey(String prefix, int version, String sessionKey) {
+        byte[] expected = String.format(
+                OmeroWebRedisSessionStore.KEY_FORMAT,
+                prefix, version, sessionKey).getBytes(StandardCharsets.UTF_8);
+        byte[] keyPrefix = OmeroWebRedisSessionStore.keyPrefix(prefix, version);
+        Assert.assertEquals(
+                OmeroWebRedisSessionStore.sessionKey(keyPrefix, sessionKey),
+                expected);
+    }
+
+    /** Records invalidations */
+    private static class RecordingListener
+            implements SessionInvalidationListener {
+
+        private final List<String> invalidated = new ArrayList<String>();
+
+        private int invalidatedAll;
+
+        @Override
+        public void invalidate(String sessionKey) {
+            invalidated.add(sessionKey);
+        }
+
+        @Override
+        public void invalidateAll() {
+            invalidatedAll++;
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testKeyspaceInvalidation() {
+        byte[] keyPrefix = OmeroWebRedisSessionStore.keyPrefix("", 1);
+        RecordingListener listener = new RecordingListener();
+        InvalidationSubscriber subscriber = new InvalidationSubscriber(
+                keyPrefix, Collections.singletonList(listener), null);
+        subscriber.message(utf8("__keyevent@*__:del"),
+                utf8("__keyevent@1__:del"),
+                OmeroWebRedisSessionStore.sessionKey(keyPrefix, "abc"));
+        // Keys other than sessions are ignored
+        subscriber.message(utf8("__keyevent@*__:del"),
+                utf8("__keyevent@1__:del"), utf8("other"));
+        Assert.assertEquals(listener.invalidated,
+                Collections.singletonList("abc"));
+    }
+
+    @Test
+    public void testChannelInvalidation() {
+        byte[] keyPrefix = OmeroWebRedisSessionStore.keyPrefix("", 1);
+        RecordingListener listener = new RecordingListener();
+        InvalidationSubscriber subscriber = new InvalidationSubscriber(
+                keyPrefix, Collections.singletonList(listener), null);
+        // Either a session key or a full session storage engine key
+        subscriber.message(utf8("channel"), utf8("abc"));
+        subscriber.message(utf8("channel"),
+                OmeroWebRedisSessionStore.sessionKey(keyPrefix, "def"));
+        Assert.assertEquals(listener.invalidated.size(), 2);
+        Assert.assertEquals(listener.invalidated.get(0), "abc");
+        Assert.assertEquals(listener.invalidated.get(1), "def");
+    }
+
+    @Test
+    public void testTopologyChangeResubscribes() {
+        RecordingListener listener = new RecordingListener();
+        AtomicInteger subscriptions = new AtomicInteger();
+        InvalidationSubscriber subscriber = new InvalidationSubscriber(
+                OmeroWebRedisSessionStore.keyPrefix("", 1),
+                Collections.singletonList(listener),
+                subscriptions::incrementAndGet);
+        subscriber.onEvent(new ClusterTopologyChangedEvent(
+                Collections.<RedisClusterNode>emptyList(),
+                Collections.<RedisClusterNode>emptyList()));
+        Assert.assertEquals(subscriptions.get(), 1);
+        Assert.assertEquals(listener.invalidatedAll, 1);
+    }
+
+    @Test
+    public void testTopologyChangeIgnoredOutsideCluster() {
+        RecordingListener listener = new RecordingListener();
+        InvalidationSubscriber subscriber = new InvalidationSubscriber(
+                OmeroWebRedisSessionStore.keyPrefix("", 1),
+                Collections.singletonList(listener), null);
+        subscriber.onEvent(new ClusterTopologyChangedEvent(
+                Collections.<RedisClusterNode>emptyList(),
+                Collections.<RedisClusterNode>emptyList()));
+        Assert.assertEquals(listener.invalidatedAll, 0);
+    }
+
+    /**
+     * Waits for a read to be cancelled, which may happen on another thread
+     * after the hedged result has completed.
+     * @param read Read expected to be cancelled.
+     */
+    private static void assertCancelled(CompletableFuture<?> read)
+            throws Exception {
+        try {
+            read.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected cancellation");
+        } catch (CancellationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testHedgeFiresAfterPercentile() throws Exception {
+        LatencyTracker latencyTracker = new LatencyTracker(
+                4, 1.0, 0L, TimeUnit.MILLISECONDS.toNanos(1),
+                TimeUnit.SECONDS.toNanos(1));
+        for (int i = 0; i < 4; i++) {
+            latencyTracker.record(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        long delay = latencyTracker.get();
+        Assert.assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(delay < TimeUnit.MILLISECONDS.toNanos(60));
+
+        CompletableFuture<String> primary = new CompletableFuture<String>();
+        AtomicLong firedAfter = new AtomicLong();
+        long start = System.nanoTime();
+        CompletableFuture<String> result = OmeroWebRedisSessionStore.hedge(
+                () -> primary,
+                () -> {
+                    firedAfter.set(System.nanoTime() - start);
+                    return CompletableFuture.completedFuture("hedged");
+                },
+                scheduler, latencyTracker);
+        Assert.assertEquals(result.get(5, TimeUnit.SECONDS), "hedged");
+        Assert.assertTrue(firedAfter.get() >= delay);
+        // The losing primary read is cancelled
+        assertCancelled(primary);
+    }
+
+    @Test
+    public void testHedgeNotFiredForFastRead() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        LatencyTracker latencyTracker = fixedDelay(10);
+        CompletableFuture<String> result = OmeroWebRedisSessionStore.hedge(
+                () -> CompletableFuture.completedFuture("primary"),
+                () -> {
+                    fired.incrementAndGet();
+                    return CompletableFuture.completedFuture("hedged");
+                },
+                scheduler, latencyTracker);
+        Assert.assertEquals(result.get(), "primary");
+        Thread.sleep(50);
+        Assert.assertEquals(fired.get(), 0);
+    }
+
+    @Test
+    public void testHedgePrimaryWins() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<String>();
+        CompletableFuture<String> hedged = new CompletableFuture<String>();
+        CountDownLatch fired = new CountDownLatch(1);
+        CompletableFuture<String> result = OmeroWebRedisSessionStore.hedge(
+                () -> primary,
+                () -> {
+                    fired.countDown();
+                    return hedged;
+                },
+                scheduler, fixedDelay(1));
+        Assert.assertTrue(fired.await(5, TimeUnit.SECONDS));
+        // The first read to complete wins even after the hedge has fired
+        primary.complete("primary");
+        Assert.assertEquals(result.get(), "primary");
+        assertCancelled(hedged);
+    }
+
+    @Test
+    public void testHedgeFailsOnlyOnceAllFail() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<String>();
+        CompletableFuture<String> hedged = new CompletableFuture<String>();
+        CountDownLatch fired = new CountDownLatch(1);
+        CompletableFuture<String> result = OmeroWebRedisSessionStore.hedge(
+                () -> primary,
+                () -> {
+                    fired.countDown();
+                    return hedged;
+                },
+                scheduler, fixedDelay(1));
+        Assert.assertTrue(fired.await(5, TimeUnit.SECONDS));
+        primary.completeExceptionally(new RuntimeException("primary"));
+        Assert.assertFalse(result.isDone());
+        hedged.completeExceptionally(new RuntimeException("hedged"));
+        try {
+            result.get();
+            Assert.fail("Expected failure");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "hedged");
+        }
+    }
+
+}
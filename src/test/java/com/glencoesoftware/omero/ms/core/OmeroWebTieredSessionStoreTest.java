@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.prometheus.client.CollectorRegistry;
+import io.vertx.core.json.JsonObject;
+
+
+public class OmeroWebTieredSessionStoreTest {
+
+    private static final String SESSION =
+        "gASVcwAAAAAAAAB9lCiMBmJhbmFuYZRLFowJY29ubmVjdG9ylH2UKIwJc2VydmVy"
+        + "X2lklIwBMZSMCWlzX3NlY3VyZZSJjAd1c2VyX2lklEsLjBFvbWVyb19zZXNzaW9u"
+        + "X2tleZSMBmFiYzEyM5SMCWlzX3B1YmxpY5SJdXUu";
+
+    /** Read only session store with a single session, counting lookups */
+    private static class SlowSessionStore implements OmeroWebSessionStore {
+
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        private final boolean fail;
+
+        /** When the session expires or <code>null</code> if unknown */
+        private volatile Long expires;
+
+        SlowSessionStore(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public CompletionStage<IConnector> getConnector(String sessionKey) {
+            return getSessionData(sessionKey).thenApply(
+                    data -> data == null ? null
+                        : PickledSessionConnector.decode(data.getData()));
+        }
+
+        @Override
+        public CompletionStage<SessionData> getSessionData(
+                String sessionKey) {
+            lookups.incrementAndGet();
+            CompletableFuture<SessionData> future =
+                    new CompletableFuture<SessionData>();
+            if (fail) {
+                future.completeExceptionally(new RuntimeException("down"));
+            } else {
+                future.complete("abc".equals(sessionKey)
+                        ? new SessionData(
+                            Base64.getDecoder().decode(SESSION), expires)
+                        : null);
+            }
+            return future;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private OmeroWebMemorySessionStore memory;
+
+    private SlowSessionStore slow;
+
+    private OmeroWebTieredSessionStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        memory = new OmeroWebMemorySessionStore(new JsonObject());
+        slow = new SlowSessionStore(false);
+        store = new OmeroWebTieredSessionStore(
+                Arrays.asList("memory", "slow"),
+                Arrays.<OmeroWebSessionStore>asList(memory, slow));
+    }
+
+    private static IConnector join(CompletionStage<IConnector> stage) {
+        return stage.toCompletableFuture().join();
+    }
+
+    @Test
+    public void testWriteBack() {
+        IConnector connector = join(store.getConnector("abc"));
+        Assert.assertEquals(connector.getOmeroSessionKey(), "abc123");
+        Assert.assertEquals(slow.lookups.get(), 1);
+        // Populated from the slow tier
+        Assert.assertEquals(
+                join(memory.getConnector("abc")).getOmeroSessionKey(),
+                "abc123");
+        join(store.getConnector("abc"));
+        Assert.assertEquals(slow.lookups.get(), 1);
+    }
+
+    @Test
+    public void testWriteBackDecodesOnce() {
+        IConnector connector = join(store.getConnector("abc"));
+        // The connector decoded by the tiered store is written back as is
+        Assert.assertSame(join(memory.getConnector("abc")), connector);
+    }
+
+    @Test
+    public void testWriteBackExpiry() throws Exception {
+        slow.expires = System.currentTimeMillis() + 50L;
+        join(store.getConnector("abc"));
+        Assert.assertNotNull(join(memory.getConnector("abc")));
+        Thread.sleep(100L);
+        // Written back for no longer than the session lives
+        Assert.assertNull(join(memory.getConnector("abc")));
+    }
+
+    @Test
+    public void testWriteBackExpired() {
+        slow.expires = System.currentTimeMillis() - 1L;
+        join(store.getConnector("abc"));
+        Assert.assertNull(join(memory.getConnector("abc")));
+    }
+
+    @Test
+    public void testMiss() {
+        Assert.assertNull(join(store.getConnector("missing")));
+        Assert.assertEquals(slow.lookups.get(), 1);
+        Assert.assertNull(join(memory.getConnector("missing")));
+    }
+
+    @Test
+    public void testInvalidate() {
+        join(store.getConnector("abc"));
+        memory.invalidate("abc");
+        join(store.getConnector("abc"));
+        Assert.assertEquals(slow.lookups.get(), 2);
+    }
+
+    @Test
+    public void testGetConnectors() {
+        join(store.getConnector("abc"));
+        Map<String, IConnector> connectors = store.getConnectors(
+                Arrays.asList("abc", "missing", "abc"))
+            .toCompletableFuture().join();
+        Assert.assertEquals(connectors.keySet(), Collections.singleton("abc"));
+        Assert.assertEquals(
+                connectors.get("abc").getOmeroSessionKey(), "abc123");
+        // Only the missing session falls through to the slow tier
+        Assert.assertEquals(slow.lookups.get(), 2);
+    }
+
+    @Test
+    public void testMemoryMaxSize() {
+        OmeroWebMemorySessionStore memory = new OmeroWebMemorySessionStore(
+                new JsonObject().put("session-store",
+                    new JsonObject().put("max_size", 10)));
+        byte[] sessionData = Base64.getDecoder().decode(SESSION);
+        for (int i = 0; i < 100; i++) {
+            memory.putSessionData("key" + i, new SessionData(sessionData, null))
+                .toCompletableFuture().join();
+        }
+        int stored = 0;
+        for (int i = 0; i < 100; i++) {
+            if (join(memory.getConnector("key" + i)) != null) {
+                stored++;
+            }
+        }
+        Assert.assertEquals(stored, 10);
+        Assert.assertNotNull(join(memory.getConnector("key99")));
+    }
+
+    @Test
+    public void testFailedTierSkipped() {
+        SlowSessionStore down = new SlowSessionStore(true);
+        store = new OmeroWebTieredSessionStore(
+                Arrays.asList("memory", "down", "slow"),
+                Arrays.<OmeroWebSessionStore>asList(memory, down, slow));
+        IConnector connector = join(store.getConnector("abc"));
+        Assert.assertEquals(connector.getOmeroSessionKey(), "abc123");
+        Assert.assertEquals(down.lookups.get(), 1);
+        Assert.assertEquals(slow.lookups.get(), 1);
+    }
+
+    @Test
+    public void testFailedTierRecordedAsError() {
+        SlowSessionStore down = new SlowSessionStore(true);
+        store = new OmeroWebTieredSessionStore(
+                Arrays.asList("down_first", "slow"),
+                Arrays.<OmeroWebSessionStore>asList(down, slow));
+        Assert.assertNotNull(join(store.getConnector("abc")));
+        Assert.assertEquals(CollectorRegistry.defaultRegistry.getSampleValue(
+                "sessionStoreTierDuration_count",
+                new String[] { "tier", "result" },
+                new String[] { "down_first", "error" }), 1.0);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class PickleMemoTest {
+
+    @Test
+    public void testPutGet() {
+        PickleMemo memo = new PickleMemo();
+        Assert.assertNull(memo.get(0));
+        memo.put(0, "a");
+        memo.put(2, "c");
+        Assert.assertEquals(memo.get(0), "a");
+        Assert.assertNull(memo.get(1));
+        Assert.assertEquals(memo.get(2), "c");
+        Assert.assertNull(memo.get(3));
+        Assert.assertNull(memo.get(-1));
+    }
+
+    @Test
+    public void testGrowth() {
+        PickleMemo memo = new PickleMemo();
+        for (int i = 0; i < 1000; i++) {
+            memo.put(i, Integer.toString(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(memo.get(i), Integer.toString(i));
+        }
+    }
+
+    @Test(timeOut = 1000)
+    public void testLargeOffsets() {
+        PickleMemo memo = new PickleMemo();
+        int last = PickleMemo.MAX_ARRAY_CAPACITY - 1;
+        memo.put(last, "last");
+        memo.put(PickleMemo.MAX_ARRAY_CAPACITY, "first overflow");
+        // Would previously never terminate or allocate 8 GiB
+        memo.put(Integer.MAX_VALUE, "max");
+        Assert.assertEquals(memo.get(last), "last");
+        Assert.assertEquals(
+                memo.get(PickleMemo.MAX_ARRAY_CAPACITY), "first overflow");
+        Assert.assertEquals(memo.get(Integer.MAX_VALUE), "max");
+        Assert.assertNull(memo.get(Integer.MAX_VALUE - 1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeOffset() {
+        new PickleMemo().put(-1, "a");
+    }
+
+    @Test
+    public void testReset() {
+        PickleMemo memo = new PickleMemo();
+        memo.put(1, "a");
+        memo.put(Integer.MAX_VALUE, "b");
+        memo.reset();
+        Assert.assertNull(memo.get(1));
+        Assert.assertNull(memo.get(Integer.MAX_VALUE));
+        memo.put(0, "c");
+        Assert.assertEquals(memo.get(0), "c");
+        Assert.assertNull(memo.get(1));
+    }
+
+}
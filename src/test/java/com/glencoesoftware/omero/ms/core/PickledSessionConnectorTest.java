@@ -18,13 +18,14 @@
 
 package com.glencoesoftware.omero.ms.core;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import com.glencoesoftware.omero.ms.core.PythonPickle.Op;
@@ -442,6 +443,44 @@ public class PickledSessionConnectorTest {
         Assert.assertEquals(v.getUserId(), Long.valueOf(0l));
     }
 
+    private byte[] dbSessionPickle() {
+        byte[] sessionData = Base64.getDecoder().decode(DB_SESSION_DATA);
+        return Arrays.copyOfRange(sessionData, 41, sessionData.length);
+    }
+
+    @Test
+    public void testDjangoSessionSignature() {
+        DjangoSessionSignature signature =
+                new DjangoSessionSignature("test-secret");
+        // python3>>> hmac.new(hashlib.sha1(b'django.contrib.sessionsSessionStore' + b'test-secret').digest(), pickle, hashlib.sha1).hexdigest()
+        Assert.assertEquals(
+            new String(signature.sign(dbSessionPickle()),
+                    StandardCharsets.US_ASCII),
+            "248ff200d8adceabe0f7da338a471e06fa1e9abe");
+    }
+
+    @Test
+    public void testUnpicklingJDBCVerified() {
+        DjangoSessionSignature signature =
+                new DjangoSessionSignature("test-secret");
+        byte[] pickle = dbSessionPickle();
+        byte[] hash = signature.sign(pickle);
+        byte[] sessionData = new byte[hash.length + 1 + pickle.length];
+        System.arraycopy(hash, 0, sessionData, 0, hash.length);
+        sessionData[hash.length] = ':';
+        System.arraycopy(pickle, 0, sessionData, hash.length + 1, pickle.length);
+        IConnector v = new JDBCPickledSessionConnector(
+                Base64.getEncoder().encodeToString(sessionData), signature);
+        Assert.assertEquals(
+            v.getOmeroSessionKey(), "dcf4afb6-fae9-4b71-90b0-67262e1d48c4");
+    }
+
+    @Test(expectedExceptions={IllegalArgumentException.class})
+    public void testUnpicklingJDBCSignatureMismatch() {
+        new JDBCPickledSessionConnector(
+                DB_SESSION_DATA, new DjangoSessionSignature("test-secret"));
+    }
+
     @Test
     public void testUnpicklingJDBCLong() {
         IConnector v = new JDBCPickledSessionConnector(FULL_LONG_DATA);
@@ -476,6 +515,42 @@ public class PickledSessionConnectorTest {
         assertRedisSessionData(v);
     }
 
+    @Test
+    public void testDecodeCompact() {
+        IConnector v = PickledSessionConnector.decode(
+                Base64.getDecoder().decode(REDIS_SESSION_DATA_PY3));
+        Assert.assertTrue(v instanceof CompactConnector);
+        assertRedisSessionData(v);
+    }
+
+    @Test
+    public void testDecodeCompactJDBC() {
+        IConnector v = JDBCPickledSessionConnector.decode(
+                DB_SESSION_DATA, null);
+        Assert.assertEquals(
+                v, CompactConnector.copyOf(
+                        new JDBCPickledSessionConnector(DB_SESSION_DATA)));
+    }
+
+    @Test
+    public void testCompactConnectorNulls() {
+        IConnector v = new CompactConnector(null, null, null, null, null);
+        Assert.assertNull(v.getServerId());
+        Assert.assertNull(v.getIsSecure());
+        Assert.assertNull(v.getIsPublic());
+        Assert.assertNull(v.getOmeroSessionKey());
+        Assert.assertNull(v.getUserId());
+
+        v = new CompactConnector(0L, false, true, "abc123", -1L);
+        Assert.assertEquals(v.getServerId(), Long.valueOf(0L));
+        Assert.assertEquals(v.getIsSecure(), Boolean.FALSE);
+        Assert.assertEquals(v.getIsPublic(), Boolean.TRUE);
+        Assert.assertEquals(v.getOmeroSessionKey(), "abc123");
+        Assert.assertEquals(v.getUserId(), Long.valueOf(-1L));
+        Assert.assertNotEquals(
+                v, new CompactConnector(0L, null, true, "abc123", -1L));
+    }
+
     @Test
     public void testUnpicklingRedisWithNumericalServerId() {
         IConnector v = new PickledSessionConnector(
@@ -550,6 +625,124 @@ public class PickledSessionConnectorTest {
                 PickledSessionConnector.deserializeNumberField(opIterator));
     }
 
+    @DataProvider(name = "two's complement longs")
+    public Object[][] twosComplementLongs() {
+        // Little endian payload and expected value, null if it overflows
+        return new Object[][] {
+            {bytes(), 0L},
+            {bytes(0x00), 0L},
+            {bytes(0x01), 1L},
+            {bytes(0x7f), 127L},
+            {bytes(0x80), -128L},
+            {bytes(0xff), -1L},
+            {bytes(0x80, 0x00), 128L},
+            {bytes(0xff, 0x7f), 32767L},
+            {bytes(0x00, 0x80), -32768L},
+            {bytes(0xff, 0xff), -1L},
+            {bytes(0xa0, 0xcc, 0x5b, 0x07), 123456672L},
+            {bytes(0xff, 0xff, 0xff, 0x7f), 2147483647L},
+            {bytes(0x00, 0x00, 0x00, 0x80), -2147483648L},
+            {bytes(0x00, 0x00, 0x00, 0x80, 0x00), 2147483648L},
+            {bytes(0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x7f),
+                36028797018963967L},
+            {bytes(0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x80),
+                -36028797018963968L},
+            {bytes(0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x7f),
+                Long.MAX_VALUE},
+            {bytes(0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x80),
+                Long.MIN_VALUE},
+            {bytes(0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff), -1L},
+            // Redundant sign extension beyond eight bytes
+            {bytes(0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x7f, 0x00),
+                Long.MAX_VALUE},
+            {bytes(0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x80, 0xff),
+                Long.MIN_VALUE},
+            {bytes(0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                   0x00, 0x00, 0x00), 1L},
+            {bytes(0xfe, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff,
+                   0xff, 0xff, 0xff), -2L},
+            // Overflow
+            {bytes(0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x80, 0x00),
+                null},
+            {bytes(0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x7f, 0xff),
+                null},
+            {bytes(0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01),
+                null},
+            {bytes(0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                   0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01), null}
+        };
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static Op longOp(PythonPickle.Opcode code, byte[] payload) {
+        int lengthSize = code == PythonPickle.Opcode.LONG1 ? 1 : 4;
+        byte[] data = new byte[payload.length + lengthSize + 4];
+        data[0] = (byte) PythonPickle.Opcode.PROTO.id();
+        data[1] = 2;
+        data[2] = (byte) code.id();
+        for (int i = 0; i < lengthSize; i++) {
+            data[3 + i] = (byte) (payload.length >> (i * 8));
+        }
+        System.arraycopy(
+                payload, 0, data, 3 + lengthSize, payload.length);
+        data[data.length - 1] = (byte) PythonPickle.Opcode.STOP.id();
+        PythonPickle pickleData =
+                new PythonPickle(new ByteBufferKaitaiStream(data));
+        Op op = pickleData.ops().get(1);
+        Assert.assertEquals(op.code(), code);
+        return op;
+    }
+
+    @Test(dataProvider = "two's complement longs")
+    public void longFromBytesTest(byte[] payload, Long expected) {
+        try {
+            Assert.assertEquals(
+                    PickledSessionConnector.longFromBytes(payload), expected);
+            Assert.assertNotNull(expected);
+        } catch (ArithmeticException e) {
+            Assert.assertNull(expected);
+        }
+    }
+
+    @Test(dataProvider = "two's complement longs")
+    public void long1OpTest(byte[] payload, Long expected) {
+        Op op = longOp(PythonPickle.Opcode.LONG1, payload);
+        Assert.assertEquals(op.hasPrimitiveArg(), expected != null);
+        Assert.assertEquals(
+                ((PythonPickle.Long1) op.arg()).val(), payload);
+        try {
+            Assert.assertEquals(
+                    PickledSessionConnector.handleNumberValue(op, true),
+                    expected);
+            Assert.assertNotNull(expected);
+        } catch (ArithmeticException e) {
+            Assert.assertNull(expected);
+        }
+    }
+
+    @Test(dataProvider = "two's complement longs")
+    public void long4OpTest(byte[] payload, Long expected) {
+        Op op = longOp(PythonPickle.Opcode.LONG4, payload);
+        Assert.assertEquals(op.hasPrimitiveArg(), expected != null);
+        Assert.assertEquals(
+                ((PythonPickle.Long4) op.arg()).val(), payload);
+        try {
+            Assert.assertEquals(
+                    PickledSessionConnector.handleNumberValue(op, true),
+                    expected);
+            Assert.assertNotNull(expected);
+        } catch (ArithmeticException e) {
+            Assert.assertNull(expected);
+        }
+    }
+
     @Test
     public void binInt1Test() {
         byte[] data = Base64.getDecoder().decode(BININT1_TEST);
@@ -597,7 +790,7 @@ public class PickledSessionConnectorTest {
         List<Op> ops = pickleData.ops();
         Iterator<Op> opIterator = ops.iterator();
         while(opIterator.next().code() != PythonPickle.Opcode.EMPTY_DICT) {}
-        Map<Integer, String> memo = new HashMap<Integer, String>();
+        PickleMemo memo = new PickleMemo();
         Assert.assertEquals(
                 "test", PickledSessionConnector.deserializeStringField(
                         opIterator, memo));
@@ -611,7 +804,7 @@ public class PickledSessionConnectorTest {
         List<Op> ops = pickleData.ops();
         Iterator<Op> opIterator = ops.iterator();
         while(opIterator.next().code() != PythonPickle.Opcode.EMPTY_DICT) {}
-        Map<Integer, String> memo = new HashMap<Integer, String>();
+        PickleMemo memo = new PickleMemo();
         Assert.assertEquals(
                 "test", PickledSessionConnector.deserializeStringField(
                         opIterator, memo));
@@ -625,7 +818,7 @@ public class PickledSessionConnectorTest {
         List<Op> ops = pickleData.ops();
         Iterator<Op> opIterator = ops.iterator();
         while(opIterator.next().code() != PythonPickle.Opcode.DICT) {}
-        Map<Integer, String> memo = new HashMap<Integer, String>();
+        PickleMemo memo = new PickleMemo();
         Assert.assertEquals(
                 "test", PickledSessionConnector.deserializeStringField(
                         opIterator, memo));
@@ -639,7 +832,7 @@ public class PickledSessionConnectorTest {
         List<Op> ops = pickleData.ops();
         Iterator<Op> opIterator = ops.iterator();
         while(opIterator.next().code() != PythonPickle.Opcode.EMPTY_DICT) {}
-        Map<Integer, String> memo = new HashMap<Integer, String>();
+        PickleMemo memo = new PickleMemo();
         Assert.assertEquals(
                 "test", PickledSessionConnector.deserializeStringField(
                         opIterator, memo));
@@ -675,7 +868,7 @@ public class PickledSessionConnectorTest {
         List<Op> ops = pickleData.ops();
         Iterator<Op> opIterator = ops.iterator();
         while(opIterator.next().code() != PythonPickle.Opcode.EMPTY_DICT) {}
-        Map<Integer, String> memo = new HashMap<Integer, String>();
+        PickleMemo memo = new PickleMemo();
         PickledSessionConnector.deserializeStringField(opIterator, memo);
     }
 }
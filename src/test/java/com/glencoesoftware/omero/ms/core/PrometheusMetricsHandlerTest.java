@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.exporter.common.TextFormat;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+
+
+public class PrometheusMetricsHandlerTest {
+
+    private Vertx vertx;
+
+    private HttpClient client;
+
+    private int port;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        CollectorRegistry registry = new CollectorRegistry();
+        Counter.build().name("test_a").help("A").register(registry).inc();
+        Counter.build().name("test_b").help("B").register(registry).inc();
+        vertx = Vertx.vertx();
+        client = vertx.createHttpClient();
+        Router router = Router.router(vertx);
+        router.get("/metrics").handler(new PrometheusMetricsHandler(registry));
+        port = await(vertx.createHttpServer().requestHandler(router)
+                .listen(0)).actualPort();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        await(vertx.close());
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture()
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return The status code, <code>Content-Type</code> and body of the
+     * response.
+     */
+    private String[] get(String uri, String accept) throws Exception {
+        String[] response = await(client.request(
+                HttpMethod.GET, port, "localhost", uri)
+            .compose(request -> {
+                if (accept != null) {
+                    request.putHeader("Accept", accept);
+                }
+                return request.send();
+            })
+            .compose(r -> r.body().map(body -> new String[] {
+                String.valueOf(r.statusCode()),
+                r.getHeader("Content-Type"),
+                body.toString()
+            })));
+        Assert.assertEquals(response[0], "200");
+        return new String[] { response[1], response[2] };
+    }
+
+    @Test
+    public void testPrometheusFormat() throws Exception {
+        String[] response = get("/metrics", null);
+        Assert.assertEquals(response[0], TextFormat.CONTENT_TYPE_004);
+        Assert.assertTrue(response[1].contains("test_a_total 1.0"));
+        Assert.assertFalse(response[1].contains("# EOF"));
+        response = get("/metrics", "text/plain;version=0.0.4;q=0.5,*/*");
+        Assert.assertEquals(response[0], TextFormat.CONTENT_TYPE_004);
+    }
+
+    @Test
+    public void testOpenMetricsFormat() throws Exception {
+        String[] response = get("/metrics",
+                "application/openmetrics-text;version=1.0.0,"
+                + "text/plain;version=0.0.4;q=0.5,*/*;q=0.1");
+        Assert.assertEquals(
+                response[0], TextFormat.CONTENT_TYPE_OPENMETRICS_100);
+        Assert.assertTrue(response[1].contains("test_a_total 1.0"));
+        Assert.assertTrue(response[1].endsWith("# EOF\n"));
+    }
+
+    @Test
+    public void testNameFilter() throws Exception {
+        String[] response = get("/metrics?name%5B%5D=test_a_total", null);
+        Assert.assertTrue(response[1].contains("test_a_total"));
+        Assert.assertFalse(response[1].contains("test_b"));
+        response = get(
+                "/metrics?name%5B%5D=test_a_total&name%5B%5D=test_b_total",
+                null);
+        Assert.assertTrue(response[1].contains("test_a_total"));
+        Assert.assertTrue(response[1].contains("test_b_total"));
+    }
+
+}
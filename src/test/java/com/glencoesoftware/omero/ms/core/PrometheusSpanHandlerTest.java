@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeoutException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import brave.handler.MutableSpan;
+import brave.propagation.TraceContext;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+
+
+public class PrometheusSpanHandlerTest {
+
+    /** Registers its histogram, so may only be constructed once */
+    private static final PrometheusSpanHandler HANDLER =
+            new PrometheusSpanHandler();
+
+    private static MutableSpan span(String tag, String value) {
+        MutableSpan span = new MutableSpan();
+        span.name("test");
+        if (tag != null) {
+            span.tag(tag, value);
+        }
+        return span;
+    }
+
+    @Test
+    public void testHandle() {
+        MutableSpan span = new MutableSpan();
+        span.name("test_handle");
+        span.startTimestamp(1000L);
+        span.finishTimestamp(1500L);
+        HANDLER.handle(TraceContext.newBuilder()
+                .traceId(1L).spanId(1L).sampled(false).build(), span);
+        String[] labelNames = new String[] {"spanName", "error", "le"};
+        Assert.assertEquals(
+                CollectorRegistry.defaultRegistry.getSampleValue(
+                        "spanDurationMs_bucket", labelNames,
+                        new String[] {"test_handle", "none", "0.25"}), 0.0);
+        Assert.assertEquals(
+                CollectorRegistry.defaultRegistry.getSampleValue(
+                        "spanDurationMs_bucket", labelNames,
+                        new String[] {"test_handle", "none", "0.5"}), 1.0);
+    }
+
+    @Test
+    public void testExemplar() throws Exception {
+        MutableSpan span = new MutableSpan();
+        span.name("test_exemplar");
+        span.startTimestamp(1000L);
+        span.finishTimestamp(1500L);
+        TraceContext context = TraceContext.newBuilder()
+                .traceId(0xabcL).spanId(1L).sampled(true).build();
+        HANDLER.handle(context, span);
+        // Unsampled traces cannot be looked up so carry no exemplar
+        span.startTimestamp(1000L);
+        span.finishTimestamp(1200000L);
+        HANDLER.handle(TraceContext.newBuilder()
+                .traceId(0xdefL).spanId(1L).sampled(false).build(), span);
+        StringWriter writer = new StringWriter();
+        TextFormat.writeOpenMetrics100(writer,
+                CollectorRegistry.defaultRegistry.filteredMetricFamilySamples(
+                        new HashSet<String>(Arrays.asList(
+                                "spanDurationMs_bucket"))));
+        String exposition = writer.toString();
+        Assert.assertTrue(exposition.contains(
+                "spanDurationMs_bucket{spanName=\"test_exemplar\","
+                + "error=\"none\",le=\"0.5\"} 1.0 # {trace_id=\""
+                + context.traceIdString() + "\"} 0.5"), exposition);
+        Assert.assertFalse(exposition.contains(
+                "trace_id=\"" + TraceContext.newBuilder().traceId(0xdefL)
+                    .spanId(1L).build().traceIdString() + "\""));
+    }
+
+    @Test
+    public void testNone() {
+        Assert.assertEquals(HANDLER.errorClass(span(null, null)), "none");
+        Assert.assertEquals(
+                HANDLER.errorClass(span("http.status_code", "200")), "none");
+    }
+
+    @Test
+    public void testStatusCodes() {
+        Assert.assertEquals(
+                HANDLER.errorClass(span("http.status_code", "404")),
+                "client");
+        Assert.assertEquals(
+                HANDLER.errorClass(span("error", "503")), "server");
+    }
+
+    @Test
+    public void testExceptions() {
+        MutableSpan span = span("error", "Timed out after 5 seconds");
+        Assert.assertEquals(HANDLER.errorClass(span), "exception");
+        span.error(new TimeoutException("Timed out after 5 seconds"));
+        Assert.assertEquals(HANDLER.errorClass(span), "TimeoutException");
+        span.error(new IllegalStateException("Some arbitrary message"));
+        Assert.assertEquals(HANDLER.errorClass(span), "exception");
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.glencoesoftware.omero.ms.core.RedisConnectionManager.Mode;
+
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.RedisURI;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+
+public class RedisConnectionManagerTest {
+
+    @Test
+    public void testModeSelection() {
+        Assert.assertEquals(RedisConnectionManager.mode(new JsonObject()
+                .put("uri", "redis://localhost:6379/1")),
+                Mode.STANDALONE);
+        Assert.assertEquals(RedisConnectionManager.mode(new JsonObject()
+                .put("uri", "redis://localhost:6379/1")
+                .put("replicas", new JsonArray())),
+                Mode.STANDALONE);
+        Assert.assertEquals(RedisConnectionManager.mode(new JsonObject()
+                .put("uri", "redis://localhost:6379/1")
+                .put("replicas", new JsonArray()
+                    .add("redis://replica:6379/1"))),
+                Mode.MASTER_REPLICA);
+        Assert.assertEquals(RedisConnectionManager.mode(new JsonObject()
+                .put("mode", "sentinel")),
+                Mode.SENTINEL);
+        Assert.assertEquals(RedisConnectionManager.mode(new JsonObject()
+                .put("mode", "Cluster")),
+                Mode.CLUSTER);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownMode() {
+        RedisConnectionManager.mode(new JsonObject().put("mode", "other"));
+    }
+
+    @Test
+    public void testStandaloneNodes() {
+        JsonObject config = new JsonObject()
+                .put("uri", "redis://localhost:6379/1")
+                .put("uris", new JsonArray().add("redis://ignored:6379"));
+        List<RedisURI> nodes =
+                RedisConnectionManager.nodes(Mode.STANDALONE, config);
+        Assert.assertEquals(nodes.size(), 1);
+        Assert.assertEquals(nodes.get(0).getHost(), "localhost");
+        Assert.assertEquals(nodes.get(0).getDatabase(), 1);
+        Assert.assertNull(
+                RedisConnectionManager.readFrom(Mode.STANDALONE, config));
+    }
+
+    @Test
+    public void testMasterReplicaNodes() {
+        JsonObject config = new JsonObject()
+                .put("uri", "redis://upstream:6379")
+                .put("replicas", new JsonArray()
+                    .add("redis://replica1:6379")
+                    .add("redis://replica2:6379"));
+        List<RedisURI> nodes =
+                RedisConnectionManager.nodes(Mode.MASTER_REPLICA, config);
+        Assert.assertEquals(nodes.size(), 3);
+        Assert.assertEquals(nodes.get(0).getHost(), "upstream");
+        Assert.assertEquals(nodes.get(2).getHost(), "replica2");
+        Assert.assertEquals(
+                RedisConnectionManager.readFrom(Mode.MASTER_REPLICA, config),
+                ReadFrom.REPLICA_PREFERRED);
+        config.put("read_from", "upstream");
+        Assert.assertEquals(
+                RedisConnectionManager.readFrom(Mode.MASTER_REPLICA, config),
+                ReadFrom.UPSTREAM);
+    }
+
+    @Test
+    public void testSentinelNodes() {
+        JsonObject config = new JsonObject()
+                .put("uri", "redis-sentinel://s1:26379,s2:26379/0#mymaster")
+                .put("uris", new JsonArray()
+                    .add("redis-sentinel://s3:26379#mymaster"));
+        List<RedisURI> nodes =
+                RedisConnectionManager.nodes(Mode.SENTINEL, config);
+        // Every sentinel is listed in a single URI
+        Assert.assertEquals(nodes.size(), 1);
+        Assert.assertEquals(nodes.get(0).getSentinelMasterId(), "mymaster");
+        List<RedisURI> sentinels = nodes.get(0).getSentinels();
+        Assert.assertEquals(sentinels.size(), 3);
+        Assert.assertEquals(sentinels.get(0).getHost(), "s1");
+        Assert.assertEquals(sentinels.get(1).getHost(), "s2");
+        Assert.assertEquals(sentinels.get(2).getHost(), "s3");
+        Assert.assertEquals(
+                RedisConnectionManager.readFrom(Mode.SENTINEL, config),
+                ReadFrom.UPSTREAM);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSentinelsForDifferentMasters() {
+        RedisConnectionManager.nodes(Mode.SENTINEL, new JsonObject()
+                .put("uri", "redis-sentinel://s1:26379#a")
+                .put("uris", new JsonArray()
+                    .add("redis-sentinel://s2:26379#b")));
+    }
+
+    @Test
+    public void testClusterNodes() {
+        JsonObject config = new JsonObject()
+                .put("uris", new JsonArray()
+                    .add("redis://node1:7000")
+                    .add("redis://node2:7000"))
+                .put("read_from", "replicaPreferred");
+        List<RedisURI> nodes =
+                RedisConnectionManager.nodes(Mode.CLUSTER, config);
+        Assert.assertEquals(nodes.size(), 2);
+        Assert.assertEquals(nodes.get(1).getHost(), "node2");
+        Assert.assertEquals(
+                RedisConnectionManager.readFrom(Mode.CLUSTER, config),
+                ReadFrom.REPLICA_PREFERRED);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoNodes() {
+        RedisConnectionManager.nodes(Mode.CLUSTER, new JsonObject());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.lettuce.core.protocol.CommandType;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.prometheus.client.CollectorRegistry;
+
+
+public class RedisMetricsTest {
+
+    private static double sample(String name, String[] labelNames,
+            String[] labelValues) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(
+                name, labelNames, labelValues);
+        return value == null ? 0 : value;
+    }
+
+    @Test
+    public void testCommandLatency() {
+        RedisMetrics metrics = new RedisMetrics("test_latency");
+        String[] labelNames = new String[] {"client", "command", "le"};
+        metrics.recordCommandLatency(
+                null, null, CommandType.GET, 200000L, 300000L);
+        metrics.recordCommandLatency(
+                null, null, CommandType.GET, 2000000L, 2000000L);
+        metrics.recordCommandLatency(
+                null, null, CommandType.SET, 100000L, 100000L);
+        Assert.assertEquals(sample("redisCommandLatency_bucket", labelNames,
+                new String[] {"test_latency", "GET", "0.25"}), 0.0);
+        Assert.assertEquals(sample("redisCommandLatency_bucket", labelNames,
+                new String[] {"test_latency", "GET", "0.5"}), 1.0);
+        Assert.assertEquals(sample("redisCommandLatency_bucket", labelNames,
+                new String[] {"test_latency", "GET", "+Inf"}), 2.0);
+        Assert.assertEquals(sample(
+                "redisCommandFirstResponseLatency_bucket", labelNames,
+                new String[] {"test_latency", "GET", "0.25"}), 1.0);
+        Assert.assertEquals(sample("redisCommandLatency_bucket", labelNames,
+                new String[] {"test_latency", "SET", "0.1"}), 1.0);
+    }
+
+    @Test
+    public void testBytes() {
+        RedisMetrics metrics = new RedisMetrics("test_bytes");
+        EmbeddedChannel channel =
+                new EmbeddedChannel(metrics.getByteCounter());
+        channel.writeOutbound(Unpooled.wrappedBuffer(new byte[10]));
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[25]));
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[5]));
+        channel.finishAndReleaseAll();
+        String[] labelNames = new String[] {"client", "direction"};
+        Assert.assertEquals(sample("redisBytes_total", labelNames,
+                new String[] {"test_bytes", "sent"}), 10.0);
+        Assert.assertEquals(sample("redisBytes_total", labelNames,
+                new String[] {"test_bytes", "received"}), 30.0);
+    }
+
+    @Test
+    public void testPendingCommands() {
+        RedisMetrics metrics = new RedisMetrics("test_pending");
+        String[] labelNames = new String[] {"client"};
+        String[] labelValues = new String[] {"test_pending"};
+        metrics.commandStarted(null);
+        metrics.commandStarted(null);
+        Assert.assertEquals(
+                sample("redisPendingCommands", labelNames, labelValues), 2.0);
+        metrics.commandSucceeded(null);
+        metrics.commandFailed(null);
+        Assert.assertEquals(
+                sample("redisPendingCommands", labelNames, labelValues), 0.0);
+    }
+
+}
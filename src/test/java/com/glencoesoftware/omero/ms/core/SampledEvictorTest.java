@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SampledEvictorTest {
+
+    @Test
+    public void testEvict() {
+        ConcurrentHashMap<String, Long> map =
+                new ConcurrentHashMap<String, Long>();
+        List<Long> evicted = new ArrayList<Long>();
+        SampledEvictor<String, Long> evictor = new SampledEvictor<String, Long>(
+                map, 10, value -> value, evicted::add);
+        for (long i = 0; i < 100; i++) {
+            map.put("key" + i, i);
+            evictor.evict("key" + i);
+            Assert.assertTrue(map.size() <= 10);
+        }
+        Assert.assertEquals(evicted.size(), 90);
+        // The entry just added is never evicted
+        Assert.assertEquals(map.get("key99"), Long.valueOf(99));
+    }
+
+    @Test
+    public void testEvictExpiringFirst() {
+        ConcurrentHashMap<String, Long> map =
+                new ConcurrentHashMap<String, Long>();
+        SampledEvictor<String, Long> evictor = new SampledEvictor<String, Long>(
+                map, 3, value -> value, value -> { });
+        map.put("a", 30L);
+        map.put("b", 10L);
+        map.put("c", 20L);
+        map.put("d", 40L);
+        // Fewer entries than are sampled so all are candidates
+        evictor.evict("d");
+        Assert.assertEquals(map.keySet().size(), 3);
+        Assert.assertFalse(map.containsKey("b"));
+    }
+
+    @Test
+    public void testWithinMaxSize() {
+        ConcurrentHashMap<String, Long> map =
+                new ConcurrentHashMap<String, Long>();
+        List<Long> evicted = new ArrayList<Long>();
+        SampledEvictor<String, Long> evictor = new SampledEvictor<String, Long>(
+                map, 3, value -> value, evicted::add);
+        map.put("a", 1L);
+        evictor.evict("a");
+        Assert.assertEquals(map.size(), 1);
+        Assert.assertTrue(evicted.isEmpty());
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.vertx.core.json.JsonObject;
+
+
+public class SessionCacheTest {
+
+    private static IConnector connector(String omeroSessionKey) {
+        return new CompactConnector(1L, false, false, omeroSessionKey, 2L);
+    }
+
+    @Test
+    public void testGetPut() {
+        SessionCache cache = new SessionCache(60000, 16, 16);
+        Assert.assertNull(cache.get("a"));
+        IConnector a = connector("abc123");
+        cache.put("a", a);
+        Assert.assertSame(cache.get("a"), a);
+        IConnector replacement = connector("def456");
+        cache.put("a", replacement);
+        Assert.assertSame(cache.get("a"), replacement);
+    }
+
+    @Test
+    public void testInvalidate() {
+        SessionCache cache = new SessionCache(60000, 16, 16);
+        cache.put("a", connector("abc123"));
+        cache.put("b", connector("def456"));
+        cache.invalidate("a");
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("b"));
+        cache.invalidateAll();
+        Assert.assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testStalePutAfterInvalidate() {
+        SessionCache cache = new SessionCache(60000, 16, 16);
+        // A lookup starts, the session is removed, then the lookup completes
+        long version = cache.version("a");
+        cache.invalidate("a");
+        cache.put("a", connector("abc123"), version);
+        Assert.assertNull(cache.get("a"));
+        // Lookups started after the invalidation are cached
+        cache.put("a", connector("abc123"), cache.version("a"));
+        Assert.assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    public void testStalePutAfterInvalidateAll() {
+        SessionCache cache = new SessionCache(60000, 16, 16);
+        long version = cache.version("a");
+        cache.invalidateAll();
+        cache.put("a", connector("abc123"), version);
+        Assert.assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testExpiry() {
+        SessionCache cache = new SessionCache(0, 16, 16);
+        cache.put("a", connector("abc123"));
+        Assert.assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testMaxSize() {
+        SessionCache cache = new SessionCache(60000, 2, 16);
+        cache.put("a", connector("a"));
+        cache.put("b", connector("b"));
+        cache.put("c", connector("c"));
+        int cached = 0;
+        for (String key : new String[] {"a", "b", "c"}) {
+            if (cache.get(key) != null) {
+                cached++;
+            }
+        }
+        Assert.assertEquals(cached, 2);
+        Assert.assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testMaxSizeSampled() {
+        SessionCache cache = new SessionCache(60000, 100, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, connector("key" + i));
+        }
+        int cached = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.get("key" + i) != null) {
+                cached++;
+            }
+        }
+        Assert.assertEquals(cached, 100);
+        Assert.assertNotNull(cache.get("key999"));
+    }
+
+    @Test
+    public void testMaxSizeExpiredFirst() throws Exception {
+        SessionCache cache = new SessionCache(50, 2, 0);
+        cache.put("a", connector("a"));
+        Thread.sleep(100L);
+        cache.put("b", connector("b"));
+        cache.put("c", connector("c"));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testDisabled() {
+        SessionCache cache = SessionCache.fromConfig(null);
+        Assert.assertFalse(cache.isEnabled());
+        cache.put("a", connector("abc123"));
+        Assert.assertNull(cache.get("a"));
+
+        cache = SessionCache.fromConfig(new JsonObject().put("ttl", 1000L));
+        Assert.assertTrue(cache.isEnabled());
+        cache.put("a", connector("abc123"));
+        Assert.assertNotNull(cache.get("a"));
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.vertx.core.json.JsonObject;
+
+
+public class SessionTokenTest {
+
+    private static final long NOW = 1000000L;
+
+    private SessionToken sessionToken;
+
+    private IConnector connector;
+
+    @BeforeMethod
+    public void setUp() {
+        sessionToken = new SessionToken("secret", 60000L, "token", "X-Token");
+        connector = new CompactConnector(1L, false, false, "abc123", 11L);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        String token = sessionToken.issue("django", connector, NOW);
+        IConnector verified = sessionToken.verify(token, "django", NOW);
+        Assert.assertNotNull(verified);
+        Assert.assertEquals(verified.getOmeroSessionKey(), "abc123");
+        Assert.assertEquals(verified.getUserId(), Long.valueOf(11L));
+    }
+
+    @Test
+    public void testNullUserId() {
+        String token = sessionToken.issue("django",
+                new CompactConnector(null, null, null, "abc123", null), NOW);
+        IConnector verified = sessionToken.verify(token, "django", NOW);
+        Assert.assertEquals(verified.getOmeroSessionKey(), "abc123");
+        Assert.assertNull(verified.getUserId());
+    }
+
+    @Test
+    public void testEncrypted() {
+        String token = sessionToken.issue("django", connector, NOW);
+        String decoded = new String(Base64.getUrlDecoder().decode(token),
+                StandardCharsets.ISO_8859_1);
+        Assert.assertFalse(decoded.contains("abc123"));
+        // Random nonces make every token distinct
+        Assert.assertNotEquals(
+                sessionToken.issue("django", connector, NOW), token);
+    }
+
+    @Test
+    public void testExpired() {
+        String token = sessionToken.issue("django", connector, NOW);
+        Assert.assertNotNull(
+                sessionToken.verify(token, "django", NOW + 59999L));
+        Assert.assertNull(sessionToken.verify(token, "django", NOW + 60000L));
+    }
+
+    @Test
+    public void testOtherSession() {
+        String token = sessionToken.issue("django", connector, NOW);
+        Assert.assertNull(sessionToken.verify(token, "other", NOW));
+    }
+
+    @Test
+    public void testOtherSecret() {
+        String token = sessionToken.issue("django", connector, NOW);
+        SessionToken other =
+                new SessionToken("other", 60000L, "token", "X-Token");
+        Assert.assertNull(other.verify(token, "django", NOW));
+    }
+
+    @Test
+    public void testTampered() {
+        String token = sessionToken.issue("django", connector, NOW);
+        char[] chars = token.toCharArray();
+        chars[4] = chars[4] == 'A' ? 'B' : 'A';
+        Assert.assertNull(
+                sessionToken.verify(new String(chars), "django", NOW));
+    }
+
+    @Test
+    public void testMalformed() {
+        Assert.assertNull(sessionToken.verify(null, "django", NOW));
+        Assert.assertNull(sessionToken.verify("", "django", NOW));
+        Assert.assertNull(sessionToken.verify("abc", "django", NOW));
+        Assert.assertNull(sessionToken.verify("!!.!!", "django", NOW));
+        Assert.assertNull(sessionToken.verify("AAAA.AAAA", "django", NOW));
+    }
+
+    @Test
+    public void testFromConfig() {
+        Assert.assertNull(SessionToken.fromConfig(null, "secret"));
+        Assert.assertNull(SessionToken.fromConfig(
+                new JsonObject().put("enabled", false), "secret"));
+        SessionToken fromConfig =
+                SessionToken.fromConfig(new JsonObject(), "secret");
+        Assert.assertEquals(fromConfig.getTtl(), 60000L);
+        Assert.assertEquals(
+                fromConfig.getCookieName(), "omero_ms_session_token");
+        // Tokens issued with the same secret are interchangeable
+        String token = sessionToken.issue("django", connector, NOW);
+        Assert.assertNotNull(fromConfig.verify(token, "django", NOW));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testFromConfigNoSecret() {
+        SessionToken.fromConfig(new JsonObject(), null);
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import brave.handler.MutableSpan;
+import brave.propagation.TraceContext;
+import io.vertx.core.json.JsonObject;
+import zipkin2.Span;
+
+
+public class TailSamplingSpanHandlerTest {
+
+    private List<Span> reported;
+
+    @BeforeMethod
+    public void setUp() {
+        reported = new CopyOnWriteArrayList<Span>();
+    }
+
+    private TailSamplingSpanHandler handler(long window, double baseline) {
+        return handler(window, baseline, 10000);
+    }
+
+    private TailSamplingSpanHandler handler(
+            long window, double baseline, int maxTraces) {
+        return new TailSamplingSpanHandler(new JsonObject().put(
+                "tail-sampling", new JsonObject()
+                    .put("window", window)
+                    .put("latency_threshold", 1000L)
+                    .put("baseline_rate", baseline)
+                    .put("max_traces", maxTraces)),
+                reported::add);
+    }
+
+    private static TraceContext context(long traceId, long spanId) {
+        return TraceContext.newBuilder()
+                .traceId(traceId).spanId(spanId).build();
+    }
+
+    private static TraceContext context(
+            long traceId, long spanId, long parentId) {
+        return TraceContext.newBuilder()
+                .traceId(traceId).spanId(spanId).parentId(parentId).build();
+    }
+
+    /**
+     * @param name Span name.
+     * @param duration Span duration in milliseconds.
+     */
+    private static MutableSpan span(String name, long duration) {
+        MutableSpan span = new MutableSpan();
+        span.name(name);
+        span.startTimestamp(1000000L);
+        span.finishTimestamp(1000000L + duration * 1000L);
+        return span;
+    }
+
+    @Test
+    public void testSlowTraceKept() {
+        TailSamplingSpanHandler handler = handler(60000L, 0.0);
+        Assert.assertFalse(handler.handle(context(1, 2, 1), span("child", 5)));
+        Assert.assertTrue(reported.isEmpty());
+        handler.handle(context(1, 1), span("root", 2000));
+        Assert.assertEquals(reported.size(), 2);
+        Assert.assertEquals(reported.get(0).name(), "child");
+        Assert.assertEquals(reported.get(1).name(), "root");
+        // Late spans of kept traces are forwarded immediately
+        handler.handle(context(1, 3, 1), span("late", 1));
+        Assert.assertEquals(reported.size(), 3);
+        handler.close();
+    }
+
+    @Test
+    public void testFastTraceDropped() {
+        TailSamplingSpanHandler handler = handler(60000L, 0.0);
+        handler.handle(context(1, 2, 1), span("child", 5));
+        handler.handle(context(1, 1), span("root", 10));
+        handler.handle(context(1, 3, 1), span("late", 1));
+        Assert.assertTrue(reported.isEmpty());
+        handler.close();
+    }
+
+    @Test
+    public void testSlowChildOfFastRootDropped() {
+        TailSamplingSpanHandler handler = handler(60000L, 0.0);
+        // Asynchronous work outliving the root does not make it slow
+        handler.handle(context(1, 2, 1), span("child", 2000));
+        handler.handle(context(1, 1), span("root", 10));
+        Assert.assertTrue(reported.isEmpty());
+        handler.close();
+    }
+
+    @Test
+    public void testDecidedTracesNotBuffered() {
+        TailSamplingSpanHandler handler = handler(60000L, 0.0, 1);
+        handler.handle(context(1, 1), span("root", 10));
+        Assert.assertEquals(handler.getBufferedTraces(), 0);
+        // Decided traces do not count towards the maximum
+        handler.handle(context(2, 2, 1), span("child", 5));
+        Assert.assertEquals(handler.getBufferedTraces(), 1);
+        handler.handle(context(3, 2, 1), span("child", 5));
+        Assert.assertEquals(handler.getBufferedTraces(), 1);
+        handler.handle(context(2, 1), span("root", 2000));
+        Assert.assertEquals(handler.getBufferedTraces(), 0);
+        Assert.assertEquals(reported.size(), 2);
+        // The decision is still remembered for late spans
+        handler.handle(context(2, 3, 1), span("late", 1));
+        Assert.assertEquals(reported.size(), 3);
+        Assert.assertEquals(handler.getBufferedTraces(), 0);
+        handler.close();
+    }
+
+    @Test
+    public void testFailedTraceKept() {
+        TailSamplingSpanHandler handler = handler(60000L, 0.0);
+        MutableSpan child = span("child", 5);
+        child.error(new IllegalStateException("Failed"));
+        handler.handle(context(1, 2, 1), child);
+        handler.handle(context(1, 1), span("root", 10));
+        Assert.assertEquals(reported.size(), 2);
+        Assert.assertEquals(reported.get(0).tags().get("error"), "Failed");
+        handler.close();
+    }
+
+    @Test
+    public void testBaseline() {
+        TailSamplingSpanHandler handler = handler(60000L, 1.0);
+        handler.handle(context(1, 1), span("root", 10));
+        Assert.assertEquals(reported.size(), 1);
+        handler.close();
+    }
+
+    @Test
+    public void testRootlessTraceDecidedAfterWindow() throws Exception {
+        TailSamplingSpanHandler handler = handler(1L, 0.0);
+        handler.handle(context(1, 2, 1), span("child", 2000));
+        Thread.sleep(10);
+        handler.sweep();
+        Assert.assertEquals(reported.size(), 1);
+        handler.close();
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2026 Glencoe Software, Inc. All rights reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package com.glencoesoftware.omero.ms.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import brave.Tracing;
+import brave.handler.FinishedSpanHandler;
+import brave.handler.MutableSpan;
+import brave.propagation.CurrentTraceContext.Scope;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import zipkin2.reporter.Reporter;
+
+
+public class TracesTest {
+
+    private final List<MutableSpan> finished =
+            new CopyOnWriteArrayList<MutableSpan>();
+
+    private Tracing tracing;
+
+    @AfterMethod
+    public void tearDown() {
+        finished.clear();
+        if (tracing != null) {
+            tracing.close();
+            tracing = null;
+        }
+    }
+
+    private Tracing tracing(Sampler sampler) {
+        tracing = Tracing.newBuilder()
+                .sampler(sampler)
+                .spanReporter(Reporter.NOOP)
+                .addFinishedSpanHandler(new FinishedSpanHandler() {
+                    @Override
+                    public boolean handle(
+                            TraceContext context, MutableSpan span) {
+                        finished.add(span);
+                        return true;
+                    }
+                })
+                .build();
+        return tracing;
+    }
+
+    private static TraceContext.Builder context() {
+        return TraceContext.newBuilder().traceId(1L).spanId(2L);
+    }
+
+    /**
+     * Runs a task with a trace context in scope.
+     * @param tracing Tracing whose current trace context is used.
+     * @param context Trace context to place in scope.
+     * @param task Task to run.
+     */
+    private static void inScope(
+            Tracing tracing, TraceContext context, Runnable task) {
+        Scope scope = tracing.currentTraceContext().newScope(context);
+        try {
+            task.run();
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void testUnsampled() {
+        Tracing tracing = tracing(Sampler.ALWAYS_SAMPLE);
+        TraceContext context = context().sampled(false).build();
+        inScope(tracing, context, () -> {
+            // Short circuits without creating a span
+            TraceSpan span = Traces.startScopedSpan("test");
+            Assert.assertSame(span, Traces.NOOP);
+            span.tag("count", 1L).finish();
+            Assert.assertSame(Traces.nextSpan("test"), Traces.NOOP);
+            Assert.assertSame(Traces.currentContext(), context);
+        });
+        Assert.assertTrue(finished.isEmpty());
+    }
+
+    @Test
+    public void testSampledLocal() {
+        Tracing tracing = tracing(Sampler.NEVER_SAMPLE);
+        TraceContext context =
+                context().sampled(false).sampledLocal(true).build();
+        inScope(tracing, context, () -> {
+            TraceSpan span = Traces.startScopedSpan("scoped");
+            Assert.assertFalse(span.isNoop());
+            span.tag("key", "value").finish();
+            Traces.nextSpan("unscoped").start().finish();
+        });
+        Assert.assertEquals(finished.size(), 2);
+        Assert.assertEquals(finished.get(0).name(), "scoped");
+        Assert.assertEquals(finished.get(0).tag("key"), "value");
+        Assert.assertEquals(finished.get(1).name(), "unscoped");
+    }
+
+    @Test
+    public void testTagLong() {
+        Tracing tracing = tracing(Sampler.ALWAYS_SAMPLE);
+        TraceContext context = context().sampled(true).build();
+        inScope(tracing, context, () -> {
+            Traces.startScopedSpan("scoped").tag("count", 42L).finish();
+            Traces.nextSpan("unscoped").start().tag("count", -1L).finish();
+        });
+        Assert.assertEquals(finished.size(), 2);
+        Assert.assertEquals(finished.get(0).tag("count"), "42");
+        Assert.assertEquals(finished.get(1).tag("count"), "-1");
+    }
+
+    @Test
+    public void testTagSupplier() {
+        Tracing tracing = tracing(Sampler.ALWAYS_SAMPLE);
+        AtomicInteger computed = new AtomicInteger();
+        Supplier<String> value = () -> {
+            computed.incrementAndGet();
+            return "value";
+        };
+        inScope(tracing, context().sampled(false).build(), () -> {
+            Traces.startScopedSpan("unsampled").tag("key", value).finish();
+        });
+        // Not computed for spans which are not recorded
+        Assert.assertEquals(computed.get(), 0);
+        inScope(tracing, context().sampled(true).build(), () -> {
+            Traces.startScopedSpan("scoped").tag("key", value).finish();
+            Traces.nextSpan("unscoped").start().tag("key", value).finish();
+        });
+        Assert.assertEquals(computed.get(), 2);
+        Assert.assertEquals(finished.size(), 2);
+        Assert.assertEquals(finished.get(0).tag("key"), "value");
+        Assert.assertEquals(finished.get(1).tag("key"), "value");
+    }
+
+    @Test
+    public void testNoopRoot() {
+        tracing(Sampler.NEVER_SAMPLE);
+        // No current context, so the sampler decides on a new root
+        TraceSpan span = Traces.startScopedSpan("test");
+        Assert.assertNotSame(span, Traces.NOOP);
+        Assert.assertTrue(span.isNoop());
+        span.tag("count", 1L).finish();
+        Assert.assertTrue(Traces.nextSpan("test").start().isNoop());
+        Assert.assertTrue(finished.isEmpty());
+    }
+
+    @Test
+    public void testNoTracing() {
+        TraceSpan span = Traces.startScopedSpan("test");
+        Assert.assertSame(span, Traces.NOOP);
+        Assert.assertTrue(span.isNoop());
+        span.tag("key", "value").tag("count", 1L).error(new Exception());
+        span.finish();
+        Assert.assertSame(Traces.nextSpan("test").start(), Traces.NOOP);
+        Assert.assertNull(Traces.currentContext());
+    }
+
+}